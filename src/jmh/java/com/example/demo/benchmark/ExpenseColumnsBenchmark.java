@@ -0,0 +1,67 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.util.ExpenseColumns;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// The column store's per-user work: a date-range total (two binary searches over the prefix sums),
+// the same total as a plain scan for comparison, and applying one committed update
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExpenseColumnsBenchmark {
+
+	private static final String[] CATEGORIES = {"Groceries", "Transport", "Dining", "Rent", "Fuel", "Misc"};
+	private static final int FIRST_DAY = 19_723;
+
+	@Param({"10", "1000", "100000"})
+	public int rows;
+
+	private ExpenseColumns columns;
+	private ExpenseColumns.Row[] sorted;
+	private ExpenseColumns.Row update;
+	private int fromDay;
+	private int toDay;
+
+	@Setup
+	public void setUp() {
+		ExpenseColumns.Builder builder = new ExpenseColumns.Builder();
+		sorted = new ExpenseColumns.Row[rows];
+		// Rows spread over three years in (day, id) order
+		for (int i = 0; i < rows; i++) {
+			sorted[i] = new ExpenseColumns.Row(i + 1, FIRST_DAY + (int) ((long) i * 1095 / rows), i % 10_000 + 1,
+					CATEGORIES[i % CATEGORIES.length], "Card", 0);
+			builder.add(sorted[i]);
+		}
+		columns = builder.build();
+		ExpenseColumns.Row middle = sorted[rows / 2];
+		update = new ExpenseColumns.Row(middle.id(), middle.day() + 30, middle.cents() + 1, "Dining", "Cash", 1);
+		fromDay = FIRST_DAY + 200;
+		toDay = FIRST_DAY + 560;
+	}
+
+	@Benchmark
+	public long rangeTotal() {
+		return columns.totalCents(fromDay, toDay);
+	}
+
+	@Benchmark
+	public long rangeTotalByScan() {
+		long total = 0;
+		for (ExpenseColumns.Row row : sorted) {
+			if (row.day() >= fromDay && row.day() <= toDay) {
+				total += row.cents();
+			}
+		}
+		return total;
+	}
+
+	@Benchmark
+	public ExpenseColumns applyUpdate() {
+		return columns.with(update);
+	}
+}
@@ -0,0 +1,47 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.model.Expense;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Serializing List<Expense> with an ObjectMapper configured the way Spring MVC configures it.
+// Output goes to a null stream so only serialization is measured, not buffer growth.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExpenseJsonBenchmark {
+
+	@Param({"10", "1000", "100000"})
+	public int rows;
+
+	private ObjectMapper objectMapper;
+	private List<Expense> expenses;
+
+	@Setup
+	public void setUp() {
+		objectMapper = Jackson2ObjectMapperBuilder.json().build();
+		expenses = new ArrayList<>(rows);
+		for (int i = 0; i < rows; i++) {
+			Expense expense = new Expense(42L, "Item " + i, BigDecimal.valueOf(i % 10_000, 2),
+					LocalDate.of(2024, 1, 1).plusDays(i % 365), "Groceries", "Weekly shop " + i, "Card", "Oslo");
+			expense.setId((long) i);
+			expenses.add(expense);
+		}
+	}
+
+	@Benchmark
+	public void serialize() throws Exception {
+		objectMapper.writeValue(OutputStream.nullOutputStream(), expenses);
+	}
+}
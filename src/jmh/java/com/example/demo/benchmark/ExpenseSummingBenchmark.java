@@ -0,0 +1,65 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.model.Expense;
+import com.example.demo.model.ExpenseSummary;
+import com.example.demo.repository.ExpenseMonthlyRollupRepository;
+import com.example.demo.repository.LoginRepository;
+import com.example.demo.repository.UserDataVersionRepository;
+import com.example.demo.service.ExpenseRollupService;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// The BigDecimal arithmetic done in Java rather than SQL: combining summary groups into the
+// overall figures, and folding a batch of new expenses into per-rollup deltas before the upserts
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExpenseSummingBenchmark {
+
+	private static final String[] CATEGORIES = {"Groceries", "Transport", "Dining", "Rent", "Fuel", "Misc"};
+
+	@Param({"10", "1000", "100000"})
+	public int rows;
+
+	private List<ExpenseSummary.Group> groups;
+	private List<Expense> expenses;
+	private ExpenseRollupService rollupService;
+
+	@Setup
+	public void setUp() {
+		groups = new ArrayList<>(rows);
+		expenses = new ArrayList<>(rows);
+		for (int i = 0; i < rows; i++) {
+			BigDecimal cost = BigDecimal.valueOf(i % 10_000 + 1, 2);
+			groups.add(new ExpenseSummary.Group("Category " + i, null, null,
+					cost.multiply(BigDecimal.TEN), 10, cost, cost.add(BigDecimal.ONE)));
+			expenses.add(new Expense(42L, "Item " + i, cost, LocalDate.of(2024, 1, 1).plusDays(i % 365),
+					CATEGORIES[i % CATEGORIES.length], null, "Card", null));
+		}
+		// Stub-only mocks so the per-call recording does not dominate the measurement
+		rollupService = new ExpenseRollupService(
+				Mockito.mock(ExpenseMonthlyRollupRepository.class, Mockito.withSettings().stubOnly()),
+				Mockito.mock(LoginRepository.class), Mockito.mock(UserDataVersionRepository.class),
+				Mockito.mock(PlatformTransactionManager.class), false, false);
+	}
+
+	@Benchmark
+	public ExpenseSummary.Group summaryOverall() {
+		return ExpenseSummary.overall(groups);
+	}
+
+	@Benchmark
+	public void rollupDeltas() {
+		rollupService.applyCreated(expenses);
+	}
+}
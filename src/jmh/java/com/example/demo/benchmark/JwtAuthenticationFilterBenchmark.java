@@ -0,0 +1,79 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.filter.JwtAuthenticationFilter;
+import com.example.demo.model.Login;
+import com.example.demo.repository.LoginRepository;
+import com.example.demo.service.CustomUserDetailsService;
+import com.example.demo.util.JwtUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+// Per-request cost of JwtAuthenticationFilter with a no-op chain: with a valid bearer token,
+// and without one (the path every unauthenticated request takes). Each invocation builds its own
+// request and response and clears the security context afterwards, as the servlet container does;
+// baseline measures just that, so the filter's own cost is the difference.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class JwtAuthenticationFilterBenchmark {
+
+	private static final String SECRET = "0123456789abcdef0123456789abcdef0123456789abcdef";
+
+	private final FilterChain chain = (request, response) -> { };
+
+	private JwtAuthenticationFilter filter;
+	private String authorization;
+
+	@Setup
+	public void setUp() {
+		JwtUtil jwtUtil = new JwtUtil(SECRET, 3_600_000, 10_000, new SimpleMeterRegistry());
+		// The account check is answered by the user cache after the first request, as in a warm server
+		LoginRepository loginRepository = Mockito.mock(LoginRepository.class, Mockito.withSettings().stubOnly());
+		Mockito.when(loginRepository.findByEmail("bench@example.com"))
+				.thenReturn(Optional.of(new Login(42L, "Bench", "User", "bench@example.com", "not-a-real-hash", null)));
+		CustomUserDetailsService userDetailsService = new CustomUserDetailsService(loginRepository, 10_000, 300);
+		filter = new JwtAuthenticationFilter(jwtUtil, userDetailsService);
+		authorization = "Bearer " + jwtUtil.generateToken("bench@example.com", 42L);
+	}
+
+	@Benchmark
+	public MockHttpServletResponse baseline() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/expenses");
+		request.addHeader("Authorization", authorization);
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		chain.doFilter(request, response);
+		SecurityContextHolder.clearContext();
+		return response;
+	}
+
+	@Benchmark
+	public MockHttpServletResponse authenticatedRequest() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/expenses");
+		request.addHeader("Authorization", authorization);
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		filter.doFilter(request, response, chain);
+		// Otherwise the next invocation would find an authentication and skip setting one
+		SecurityContextHolder.clearContext();
+		return response;
+	}
+
+	@Benchmark
+	public MockHttpServletResponse anonymousRequest() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/expenses");
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		filter.doFilter(request, response, chain);
+		SecurityContextHolder.clearContext();
+		return response;
+	}
+}
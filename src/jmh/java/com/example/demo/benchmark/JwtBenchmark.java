@@ -0,0 +1,56 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.util.JwtUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Token issue and verification. The cached variants hit JwtUtil's parsed-claims cache as repeat
+// requests with the same token do; the uncached ones pay for the HMAC check and JSON parsing.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtBenchmark {
+
+	private static final String SECRET = "0123456789abcdef0123456789abcdef0123456789abcdef";
+
+	private JwtUtil cached;
+	private JwtUtil uncached;
+	private String token;
+
+	@Setup
+	public void setUp() {
+		cached = new JwtUtil(SECRET, 3_600_000, 10_000, new SimpleMeterRegistry());
+		uncached = new JwtUtil(SECRET, 3_600_000, 0, new SimpleMeterRegistry());
+		token = cached.generateToken("bench@example.com", 42L);
+	}
+
+	@Benchmark
+	public String generateToken() {
+		return cached.generateToken("bench@example.com", 42L);
+	}
+
+	@Benchmark
+	public String extractEmailCached() {
+		return cached.extractEmail(token);
+	}
+
+	@Benchmark
+	public String extractEmailUncached() {
+		return uncached.extractEmail(token);
+	}
+
+	@Benchmark
+	public boolean validateTokenCached() {
+		return cached.validateToken(token);
+	}
+
+	@Benchmark
+	public boolean validateTokenUncached() {
+		return uncached.validateToken(token);
+	}
+}
@@ -0,0 +1,49 @@
+package com.example.demo.config;
+
+import com.example.demo.service.UserCacheGenerations;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.interceptor.KeyGenerator;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import java.util.Arrays;
+import java.util.List;
+
+// The caching advice runs outside the transactional one, so a cache hit does not open a
+// transaction or borrow a connection
+@Configuration
+@EnableCaching(order = Ordered.HIGHEST_PRECEDENCE)
+public class CacheConfig {
+
+    public static final String ANALYTICS_CACHE = "analytics";
+
+    @Bean
+    public CacheManager cacheManager(@Value("${ANALYTICS_CACHE_SIZE:50000}") long analyticsCacheSize) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager(ANALYTICS_CACHE);
+        cacheManager.setCaffeine(Caffeine.newBuilder()
+                .maximumSize(analyticsCacheSize)
+                .recordStats());
+        cacheManager.setAllowNullValues(false);
+        return cacheManager;
+    }
+
+    // For methods whose first parameter is the user id: the key carries the user's current
+    // generation, their persisted data version, so entries cached before that user's last write,
+    // made through this instance or any other, are never returned.
+    // Other parameters may be null (e.g. an open date range), hence Arrays.asList over List.of
+    @Bean
+    public KeyGenerator analyticsKeyGenerator(UserCacheGenerations generations) {
+        return (target, method, params) -> {
+            Long userId = (Long) params[0];
+            return new AnalyticsKey(userId, generations.current(userId), method.getName(), Arrays.asList(params));
+        };
+    }
+
+    private record AnalyticsKey(Long userId, long generation, String method, List<Object> params) {
+    }
+}
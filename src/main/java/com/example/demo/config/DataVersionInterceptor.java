@@ -0,0 +1,47 @@
+package com.example.demo.config;
+
+import com.example.demo.model.AuthenticatedUser;
+import com.example.demo.service.UserCacheGenerations;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+// Conditional GETs for expense reads. Everything a user can read under /api/expenses derives from
+// their expenses, so one per-user data version (bumped by every ExpenseService write) is a valid
+// validator for all of it. A matching If-None-Match is answered with 304 here, after a primary-key
+// lookup and before the controller runs any query or serializes anything. No Last-Modified is sent:
+// HTTP dates have one-second precision, so two writes within the same second would share a date and
+// If-Modified-Since would answer 304 for data that changed.
+// The version is the user's cache generation (UserCacheGenerations), read from the primary, never a
+// replica: a lagging replica could still hold the version a client already has and answer 304 after a
+// write. The handler's read-only transactions then go to the primary whenever their replica has not
+// replayed this version (ReplicaDataSource), so the ETag never labels older data, even when the write
+// went through another instance.
+@Component
+public class DataVersionInterceptor implements HandlerInterceptor {
+
+    private final UserCacheGenerations cacheGenerations;
+
+    public DataVersionInterceptor(UserCacheGenerations cacheGenerations) {
+        this.cacheGenerations = cacheGenerations;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!"GET".equals(request.getMethod()) && !"HEAD".equals(request.getMethod())) {
+            return true;
+        }
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !(authentication.getPrincipal() instanceof AuthenticatedUser user)) {
+            return true;
+        }
+        // The same version keys the request's cached analytics, so they match the ETag
+        String etag = "W/\"" + cacheGenerations.currentForRequest(user.id()) + "\"";
+        // Also sets the ETag on the response when the handler does run
+        return !new ServletWebRequest(request, response).checkNotModified(etag);
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.demo.config;
+
+import com.example.demo.util.SqlStatementCounter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.spi.BootstrapContext;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostLoadEventListener;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+import org.springframework.data.repository.core.support.RepositoryMethodInvocationListener;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Per-request SQL statement and entity-load counts (see SqlStatementCounter and
+// SqlStatementBudgetFilter), and logging of repository calls slower than SLOW_QUERY_THRESHOLD_MS.
+// Hibernate's own statistics (hibernate.* meters) are enabled through hibernate.generate_statistics.
+@Configuration
+public class PersistenceMetricsConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(PersistenceMetricsConfig.class);
+
+    @Bean
+    public HibernatePropertiesCustomizer sqlStatementCounterCustomizer(SqlStatementCounter counter) {
+        return properties -> {
+            // A statement inspector configured explicitly (e.g. by a test) takes precedence
+            properties.putIfAbsent("hibernate.session_factory.statement_inspector", counter);
+            properties.put("hibernate.integrator_provider", (IntegratorProvider) () -> List.of(new Integrator() {
+                @Override
+                public void integrate(Metadata metadata, BootstrapContext bootstrapContext,
+                                      SessionFactoryImplementor sessionFactory) {
+                    sessionFactory.getServiceRegistry().requireService(EventListenerRegistry.class)
+                            .appendListeners(EventType.POST_LOAD, (PostLoadEventListener) event -> counter.entityLoaded());
+                }
+
+                @Override
+                public void disintegrate(SessionFactoryImplementor sessionFactory,
+                                         SessionFactoryServiceRegistry serviceRegistry) {
+                }
+            }));
+        };
+    }
+
+    // Static so it is registered before the repository factory beans it post-processes
+    @Bean
+    public static BeanPostProcessor slowRepositoryCallLogger(ObjectProvider<MeterRegistry> meterRegistry,
+                                                             Environment environment) {
+        long thresholdMillis = environment.getProperty("SLOW_QUERY_THRESHOLD_MS", Long.class, 200L);
+        RepositoryMethodInvocationListener listener = invocation -> {
+            long millis = invocation.getDuration(TimeUnit.MILLISECONDS);
+            if (millis < thresholdMillis) {
+                return;
+            }
+            String repository = invocation.getRepositoryInterface().getSimpleName();
+            String method = invocation.getMethod().getName();
+            log.warn("Slow repository call {}.{} took {} ms", repository, method, millis);
+            Counter.builder("spring.data.repository.slow.invocations")
+                    .tag("repository", repository)
+                    .tag("method", method)
+                    .register(meterRegistry.getObject())
+                    .increment();
+        };
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof RepositoryFactoryBeanSupport<?, ?, ?> factoryBean) {
+                    factoryBean.addRepositoryFactoryCustomizer(factory -> factory.addInvocationListener(listener));
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.demo.config;
+
+import com.example.demo.model.AuthenticatedUser;
+import com.example.demo.service.ReadYourWritesWindow;
+import com.example.demo.service.UserCacheGenerations;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Hands out connections for read-only transactions: round-robin over the replicas that are
+// currently healthy, falling back to the primary when none is, or when the current user wrote
+// within the read-your-writes window. A request that read the user's data version from the primary
+// (DataVersionInterceptor) is also sent to the primary when the chosen replica has not replayed that
+// version yet, whichever instance the write went through, so its ETag and cache keys never label
+// older data. A replica is ejected for DB_REPLICA_EJECT_MS when it refuses
+// a connection or fails the periodic health check, which also ejects replicas lagging more than
+// DB_REPLICA_MAX_LAG_MS behind the primary.
+public class ReplicaDataSource extends AbstractDataSource {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaDataSource.class);
+
+    // Zero on a caught-up standby and on a server that is not a standby at all
+    private static final String VERSION_SQL = "SELECT coalesce(max(version), 0) FROM user_data_versions WHERE user_id = ?";
+    private static final String LAG_SQL = "SELECT COALESCE(CASE WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() "
+            + "THEN 0 ELSE EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000 END, 0)";
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final ReadYourWritesWindow readYourWrites;
+    private final long ejectMillis;
+    private final long maxLagMillis;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReplicaDataSource(DataSource primary, List<Replica> replicas, ReadYourWritesWindow readYourWrites,
+                             long ejectMillis, long maxLagMillis) {
+        this.primary = primary;
+        this.replicas = replicas;
+        this.readYourWrites = readYourWrites;
+        this.ejectMillis = ejectMillis;
+        this.maxLagMillis = maxLagMillis;
+    }
+
+    public static class Replica {
+        private final String name;
+        private final DataSource dataSource;
+        private volatile long ejectedUntil;
+
+        public Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+
+        public String getName() { return name; }
+        public boolean isAvailable() { return System.currentTimeMillis() >= ejectedUntil; }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Long userId = currentUserId();
+        if (userId != null && readYourWrites.isRecentWriter(userId)) {
+            return primary.getConnection();
+        }
+        long requiredVersion = userId != null ? UserCacheGenerations.rememberedForRequest(userId) : -1;
+        int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((start + i) % replicas.size());
+            if (!replica.isAvailable()) {
+                continue;
+            }
+            Connection connection = null;
+            try {
+                connection = replica.dataSource.getConnection();
+                if (requiredVersion > 0 && !hasReplayed(connection, userId, requiredVersion)) {
+                    connection.close();
+                    return primary.getConnection();
+                }
+                return connection;
+            } catch (SQLException e) {
+                closeQuietly(connection);
+                eject(replica, e.getMessage());
+            }
+        }
+        return primary.getConnection();
+    }
+
+    // One primary-key lookup on the replica, only for requests that know the version they need
+    private static boolean hasReplayed(Connection connection, Long userId, long version) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(VERSION_SQL)) {
+            statement.setLong(1, userId);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                return resultSet.getLong(1) >= version;
+            }
+        }
+    }
+
+    private static void closeQuietly(Connection connection) {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            log.debug("Could not close replica connection: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Replica connections use the configured credentials");
+    }
+
+    @Scheduled(fixedDelayString = "${DB_REPLICA_CHECK_INTERVAL_MS:5000}")
+    public void checkReplicas() {
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.dataSource.getConnection();
+                 Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery(LAG_SQL)) {
+                resultSet.next();
+                long lagMillis = (long) resultSet.getDouble(1);
+                if (lagMillis > maxLagMillis) {
+                    eject(replica, "replication lag " + lagMillis + " ms");
+                } else if (replica.ejectedUntil != 0) {
+                    replica.ejectedUntil = 0;
+                    log.info("Replica {} is healthy again", replica.name);
+                }
+            } catch (SQLException e) {
+                eject(replica, e.getMessage());
+            }
+        }
+    }
+
+    public List<Replica> getReplicas() {
+        return replicas;
+    }
+
+    public void close() throws Exception {
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    private void eject(Replica replica, String reason) {
+        if (replica.isAvailable()) {
+            log.warn("Ejecting replica {} for {} ms: {}", replica.name, ejectMillis, reason);
+        }
+        replica.ejectedUntil = System.currentTimeMillis() + ejectMillis;
+    }
+
+    private static Long currentUserId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null && authentication.getPrincipal() instanceof AuthenticatedUser user
+                ? user.id()
+                : null;
+    }
+}
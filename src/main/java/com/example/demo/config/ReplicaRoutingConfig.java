@@ -0,0 +1,78 @@
+package com.example.demo.config;
+
+import com.example.demo.service.ReadYourWritesWindow;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+// Active when DB_REPLICA_URLS lists one or more comma-separated JDBC URLs. The application's
+// DataSource then defers choosing a database until a transaction runs its first statement:
+// read-only transactions (@Transactional(readOnly = true), and Spring Data's read methods) get a
+// replica connection from ReplicaDataSource, everything else the primary pool.
+// Replicas serve data as of their last replayed write; a request that knows the user's data version
+// reads the primary while the replica is behind it, and READ_YOUR_WRITES_MS (at least
+// DB_REPLICA_MAX_LAG_MS, its default) keeps recent writers on the primary for the other reads.
+@Configuration
+@ConditionalOnExpression("'${DB_REPLICA_URLS:}' != ''")
+public class ReplicaRoutingConfig {
+
+    // Same pool Spring Boot would build, including the spring.datasource.hikari.* settings
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean(destroyMethod = "close")
+    public ReplicaDataSource replicaDataSource(HikariDataSource primaryDataSource, DataSourceProperties properties,
+                                               ReadYourWritesWindow readYourWrites, MeterRegistry meterRegistry,
+                                               @Value("${DB_REPLICA_URLS}") String urls,
+                                               @Value("${DB_REPLICA_USERNAME:${spring.datasource.username}}") String username,
+                                               @Value("${DB_REPLICA_PASS:${spring.datasource.password}}") String password,
+                                               @Value("${DB_REPLICA_POOL_SIZE:10}") int poolSize,
+                                               @Value("${DB_REPLICA_CONNECTION_TIMEOUT_MS:1000}") long connectionTimeoutMillis,
+                                               @Value("${DB_REPLICA_EJECT_MS:30000}") long ejectMillis,
+                                               @Value("${DB_REPLICA_MAX_LAG_MS:10000}") long maxLagMillis) {
+        List<ReplicaDataSource.Replica> replicas = new ArrayList<>();
+        for (String url : urls.split(",")) {
+            if (url.isBlank()) {
+                continue;
+            }
+            HikariConfig config = new HikariConfig();
+            config.setPoolName("replica-" + (replicas.size() + 1));
+            config.setJdbcUrl(url.trim());
+            config.setUsername(username);
+            config.setPassword(password);
+            config.setDriverClassName(properties.determineDriverClassName());
+            config.setMaximumPoolSize(poolSize);
+            config.setReadOnly(true);
+            // A replica that is down must not block requests or startup; it is ejected and retried
+            config.setConnectionTimeout(connectionTimeoutMillis);
+            config.setInitializationFailTimeout(-1);
+            config.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+            replicas.add(new ReplicaDataSource.Replica(config.getPoolName(), new HikariDataSource(config)));
+        }
+        return new ReplicaDataSource(primaryDataSource, replicas, readYourWrites, ejectMillis, maxLagMillis);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primaryDataSource, ReplicaDataSource replicaDataSource) {
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(primaryDataSource);
+        dataSource.setReadOnlyDataSource(replicaDataSource);
+        return dataSource;
+    }
+}
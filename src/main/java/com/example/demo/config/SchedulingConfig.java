@@ -0,0 +1,13 @@
+package com.example.demo.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+// Background jobs are opt-in through their cron properties, e.g. ROLLUP_CHECK_CRON; expense partition
+// maintenance runs by default (PARTITION_MAINTENANCE_CRON) since new years need their partition, and so
+// does the change feed's outbox cleanup (EVENT_CLEANUP_CRON). The feed's poll and heartbeat only do work
+// while clients are subscribed.
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -1,151 +1,363 @@
 package com.example.demo.controller;
 
+import com.example.demo.exception.PreconditionFailedException;
+import com.example.demo.model.AuthenticatedUser;
 import com.example.demo.model.Expense;
+import com.example.demo.model.ExpenseBatchResult;
+import com.example.demo.model.ExpenseImportResult;
+import com.example.demo.model.ExpenseFilter;
+import com.example.demo.model.ExpensePage;
+import com.example.demo.model.ExpenseSearchHit;
+import com.example.demo.model.ExpenseSort;
+import com.example.demo.model.ExpenseView;
+import com.example.demo.model.ExpenseSummary;
+import com.example.demo.model.ExportFormat;
+import com.example.demo.model.SummaryDimension;
+import com.example.demo.service.ExpenseChangeFeed;
+import com.example.demo.service.ExpenseImportService;
 import com.example.demo.service.ExpenseService;
-import com.example.demo.service.LoginService;
-import com.example.demo.util.JwtUtil;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/api/expenses")
 public class ExpenseController {
     
     private final ExpenseService expenseService;
-    private final JwtUtil jwtUtil;
-    private final LoginService loginService;
+    private final ExpenseImportService expenseImportService;
+    private final ExpenseChangeFeed changeFeed;
     
-    public ExpenseController(ExpenseService expenseService, JwtUtil jwtUtil, LoginService loginService) {
+    // The authenticated user is resolved by JwtAuthenticationFilter and injected as AuthenticatedUser
+    public ExpenseController(ExpenseService expenseService, ExpenseImportService expenseImportService,
+                             ExpenseChangeFeed changeFeed) {
         this.expenseService = expenseService;
-        this.jwtUtil = jwtUtil;
-        this.loginService = loginService;
-    }
-    
-    // Helper method to get user ID from JWT token
-    private Long getUserIdFromToken(String authHeader) {
-        if (authHeader != null && authHeader.startsWith("Bearer ")) {
-            String token = authHeader.substring(7);
-            String email = jwtUtil.extractEmail(token);
-            return loginService.getLoginByEmail(email)
-                    .map(login -> login.getId())
-                    .orElseThrow(() -> new RuntimeException("User not found"));
-        }
-        throw new RuntimeException("Invalid or missing JWT token");
+        this.expenseImportService = expenseImportService;
+        this.changeFeed = changeFeed;
     }
     
     // CRUD Operations
     @GetMapping
-    public ResponseEntity<List<Expense>> getAllExpenses(@RequestHeader("Authorization") String authHeader) {
-        Long userId = getUserIdFromToken(authHeader);
-        List<Expense> expenses = expenseService.getAllExpensesByUserId(userId);
+    public ResponseEntity<ExpensePage<?>> getAllExpenses(@RequestParam(required = false) String cursor,
+                                                         @RequestParam(defaultValue = "50") int limit,
+                                                         @RequestParam(defaultValue = "full") String view,
+                                                         AuthenticatedUser user) {
+        Long userId = user.id();
+        ExpenseView<?> expenseView = parseView(view);
+        ExpensePage<?> expenses = expenseService.getAllExpensesByUserId(userId, cursor, limit, expenseView);
         return ResponseEntity.ok(expenses);
     }
     
     @GetMapping("/{id}")
-    public ResponseEntity<Expense> getExpenseById(@PathVariable Long id, 
-                                                 @RequestHeader("Authorization") String authHeader) {
-        Long userId = getUserIdFromToken(authHeader);
+    public ResponseEntity<Expense> getExpenseById(@PathVariable Long id,
+                                                 AuthenticatedUser user) {
+        Long userId = user.id();
+        // With the ETag set, Spring answers a matching If-None-Match with 304 and no body
         return expenseService.getExpenseByIdAndUserId(id, userId)
-                .map(ResponseEntity::ok)
+                .map(expense -> ResponseEntity.ok().eTag(etag(expense)).body(expense))
                 .orElse(ResponseEntity.notFound().build());
     }
     
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
     public ResponseEntity<Expense> createExpense(@RequestBody Expense expense,
-                                                @RequestHeader("Authorization") String authHeader) {
-        Long userId = getUserIdFromToken(authHeader);
+                                                AuthenticatedUser user) {
+        Long userId = user.id();
         expense.setUserId(userId);
         Expense createdExpense = expenseService.createExpense(expense);
         return ResponseEntity.status(HttpStatus.CREATED).body(createdExpense);
     }
     
+    @PostMapping("/batch")
+    public ResponseEntity<ExpenseBatchResult> createExpenses(@RequestBody List<Expense> expenses,
+                                                             AuthenticatedUser user) {
+        Long userId = user.id();
+        if (expenses.size() > ExpenseService.MAX_BATCH_SIZE) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+        }
+        ExpenseBatchResult result = expenseService.createExpenses(userId, expenses);
+        return ResponseEntity.ok(result);
+    }
+    
+    // Imports a CSV file (header row required: item, cost, expense_date; optional category,
+    // description, payment_method, location). dateFormat is a DateTimeFormatter pattern, ISO by default.
+    @PostMapping(value = "/import", consumes = "multipart/form-data")
+    public ResponseEntity<ExpenseImportResult> importExpenses(@RequestParam("file") MultipartFile file,
+                                                              @RequestParam(required = false) String dateFormat,
+                                                              AuthenticatedUser user) throws IOException {
+        Long userId = user.id();
+        DateTimeFormatter formatter;
+        try {
+            formatter = dateFormat != null ? DateTimeFormatter.ofPattern(dateFormat) : DateTimeFormatter.ISO_LOCAL_DATE;
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        try (InputStream in = file.getInputStream()) {
+            ExpenseImportResult result = expenseImportService.importCsv(userId, in, formatter);
+            return ResponseEntity.ok(result);
+        }
+    }
+    
     @PutMapping("/{id}")
     public ResponseEntity<Expense> updateExpense(@PathVariable Long id,
                                                 @RequestBody Expense expense,
-                                                @RequestHeader("Authorization") String authHeader) {
-        Long userId = getUserIdFromToken(authHeader);
+                                                @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                AuthenticatedUser user) {
+        Long userId = user.id();
         try {
-            Expense updatedExpense = expenseService.updateExpense(id, userId, expense);
-            return ResponseEntity.ok(updatedExpense);
-        } catch (RuntimeException e) {
-            return ResponseEntity.notFound().build();
+            return expenseService.updateExpense(id, userId, expectedVersion(ifMatch), expense)
+                    .map(updated -> ResponseEntity.ok().eTag(etag(updated)).body(updated))
+                    .orElse(ResponseEntity.notFound().build());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    // Partial update: only the fields present in the body are changed (a field cannot be cleared this way)
+    @PatchMapping("/{id}")
+    public ResponseEntity<Expense> patchExpense(@PathVariable Long id,
+                                               @RequestBody Expense changes,
+                                               @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                               AuthenticatedUser user) {
+        Long userId = user.id();
+        try {
+            return expenseService.patchExpense(id, userId, expectedVersion(ifMatch), changes)
+                    .map(updated -> ResponseEntity.ok().eTag(etag(updated)).body(updated))
+                    .orElse(ResponseEntity.notFound().build());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
         }
     }
     
     @DeleteMapping("/{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public ResponseEntity<Void> deleteExpense(@PathVariable Long id,
-                                             @RequestHeader("Authorization") String authHeader) {
-        Long userId = getUserIdFromToken(authHeader);
-        try {
-            expenseService.deleteExpense(id, userId);
-            return ResponseEntity.noContent().build();
-        } catch (RuntimeException e) {
+                                             @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                             AuthenticatedUser user) {
+        Long userId = user.id();
+        if (!expenseService.deleteExpense(id, userId, expectedVersion(ifMatch))) {
             return ResponseEntity.notFound().build();
         }
+        return ResponseEntity.noContent().build();
+    }
+    
+    // A single expense is validated by its own @Version: ETag "3" on GET, If-Match "3" on writes
+    private static String etag(Expense expense) {
+        return "\"" + expense.getVersion() + "\"";
+    }
+    
+    // Null (no check) for a missing If-Match or "*"; a tag that cannot be a version never matches
+    private static Long expectedVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.startsWith("W/")) {
+            tag = tag.substring(2);
+        }
+        try {
+            return Long.parseLong(tag.replace("\"", ""));
+        } catch (NumberFormatException e) {
+            throw new PreconditionFailedException("If-Match does not name an expense version: " + ifMatch);
+        }
     }
     
     // Filtering Endpoints
     @GetMapping("/category/{category}")
-    public ResponseEntity<List<Expense>> getExpensesByCategory(@PathVariable String category,
-                                                              @RequestHeader("Authorization") String authHeader) {
-        Long userId = getUserIdFromToken(authHeader);
-        List<Expense> expenses = expenseService.getExpensesByCategory(userId, category);
+    public ResponseEntity<ExpensePage<?>> getExpensesByCategory(@PathVariable String category,
+                                                                @RequestParam(required = false) String cursor,
+                                                                @RequestParam(defaultValue = "50") int limit,
+                                                                @RequestParam(defaultValue = "full") String view,
+                                                                AuthenticatedUser user) {
+        Long userId = user.id();
+        ExpenseView<?> expenseView = parseView(view);
+        ExpensePage<?> expenses = expenseService.getExpensesByCategory(userId, category, cursor, limit, expenseView);
         return ResponseEntity.ok(expenses);
     }
     
     @GetMapping("/date-range")
-    public ResponseEntity<List<Expense>> getExpensesByDateRange(@RequestParam LocalDate startDate,
-                                                               @RequestParam LocalDate endDate,
-                                                               @RequestHeader("Authorization") String authHeader) {
-        Long userId = getUserIdFromToken(authHeader);
-        List<Expense> expenses = expenseService.getExpensesByDateRange(userId, startDate, endDate);
+    public ResponseEntity<ExpensePage<?>> getExpensesByDateRange(@RequestParam LocalDate startDate,
+                                                                 @RequestParam LocalDate endDate,
+                                                                 @RequestParam(required = false) String cursor,
+                                                                 @RequestParam(defaultValue = "50") int limit,
+                                                                 @RequestParam(defaultValue = "full") String view,
+                                                                 AuthenticatedUser user) {
+        Long userId = user.id();
+        ExpenseView<?> expenseView = parseView(view);
+        ExpensePage<?> expenses = expenseService.getExpensesByDateRange(userId, startDate, endDate, cursor, limit, expenseView);
         return ResponseEntity.ok(expenses);
     }
     
     @GetMapping("/cost-range")
-    public ResponseEntity<List<Expense>> getExpensesByCostRange(@RequestParam BigDecimal minCost,
-                                                               @RequestParam BigDecimal maxCost,
-                                                               @RequestHeader("Authorization") String authHeader) {
-        Long userId = getUserIdFromToken(authHeader);
-        List<Expense> expenses = expenseService.getExpensesByCostRange(userId, minCost, maxCost);
+    public ResponseEntity<ExpensePage<?>> getExpensesByCostRange(@RequestParam BigDecimal minCost,
+                                                                 @RequestParam BigDecimal maxCost,
+                                                                 @RequestParam(required = false) String cursor,
+                                                                 @RequestParam(defaultValue = "50") int limit,
+                                                                 @RequestParam(defaultValue = "full") String view,
+                                                                 AuthenticatedUser user) {
+        Long userId = user.id();
+        ExpenseView<?> expenseView = parseView(view);
+        ExpensePage<?> expenses = expenseService.getExpensesByCostRange(userId, minCost, maxCost, cursor, limit, expenseView);
         return ResponseEntity.ok(expenses);
     }
     
     @GetMapping("/payment-method/{paymentMethod}")
-    public ResponseEntity<List<Expense>> getExpensesByPaymentMethod(@PathVariable String paymentMethod,
-                                                                   @RequestHeader("Authorization") String authHeader) {
-        Long userId = getUserIdFromToken(authHeader);
-        List<Expense> expenses = expenseService.getExpensesByPaymentMethod(userId, paymentMethod);
+    public ResponseEntity<ExpensePage<?>> getExpensesByPaymentMethod(@PathVariable String paymentMethod,
+                                                                     @RequestParam(required = false) String cursor,
+                                                                     @RequestParam(defaultValue = "50") int limit,
+                                                                     @RequestParam(defaultValue = "full") String view,
+                                                                     AuthenticatedUser user) {
+        Long userId = user.id();
+        ExpenseView<?> expenseView = parseView(view);
+        ExpensePage<?> expenses = expenseService.getExpensesByPaymentMethod(userId, paymentMethod, cursor, limit, expenseView);
         return ResponseEntity.ok(expenses);
     }
     
+    // Fuzzy search over item and description, best matches first: /search?q=cofee
+    // itemName is still accepted for clients of the old substring search
     @GetMapping("/search")
-    public ResponseEntity<List<Expense>> searchExpensesByItem(@RequestParam String itemName,
-                                                             @RequestHeader("Authorization") String authHeader) {
-        Long userId = getUserIdFromToken(authHeader);
-        List<Expense> expenses = expenseService.searchExpensesByItem(userId, itemName);
+    public ResponseEntity<ExpensePage<ExpenseSearchHit>> searchExpenses(@RequestParam(required = false) String q,
+                                                                        @RequestParam(required = false) String itemName,
+                                                                        @RequestParam(required = false) String cursor,
+                                                                        @RequestParam(defaultValue = "50") int limit,
+                                                                        AuthenticatedUser user) {
+        Long userId = user.id();
+        String query = q != null ? q : itemName;
+        if (query == null || query.isBlank()) {
+            return ResponseEntity.badRequest().build();
+        }
+        ExpensePage<ExpenseSearchHit> hits = expenseService.searchExpenses(userId, query, cursor, limit);
+        return ResponseEntity.ok(hits);
+    }
+    
+    // All filters are optional and combined with AND, e.g.
+    // /query?category=Food&paymentMethod=Card&minCost=10&maxCost=100&startDate=2024-03-01&endDate=2024-03-31&text=coffee
+    // sort is expenseDate or cost; direction is desc or asc
+    @GetMapping("/query")
+    public ResponseEntity<ExpensePage<?>> queryExpenses(@RequestParam(required = false) String category,
+                                                        @RequestParam(required = false) String paymentMethod,
+                                                        @RequestParam(required = false) BigDecimal minCost,
+                                                        @RequestParam(required = false) BigDecimal maxCost,
+                                                        @RequestParam(required = false) LocalDate startDate,
+                                                        @RequestParam(required = false) LocalDate endDate,
+                                                        @RequestParam(required = false) String text,
+                                                        @RequestParam(defaultValue = "expenseDate") String sort,
+                                                        @RequestParam(defaultValue = "desc") String direction,
+                                                        @RequestParam(required = false) String cursor,
+                                                        @RequestParam(defaultValue = "50") int limit,
+                                                        @RequestParam(defaultValue = "full") String view,
+                                                        AuthenticatedUser user) {
+        Long userId = user.id();
+        ExpenseView<?> expenseView = parseView(view);
+        ExpenseSort sortBy;
+        Sort.Direction sortDirection;
+        try {
+            sortBy = ExpenseSort.fromParameter(sort);
+            sortDirection = Sort.Direction.fromString(direction);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        ExpenseFilter filter = new ExpenseFilter(category, paymentMethod, minCost, maxCost, startDate, endDate, text);
+        ExpensePage<?> expenses = expenseService.queryExpenses(userId, filter, sortBy, sortDirection, cursor, limit, expenseView);
         return ResponseEntity.ok(expenses);
     }
     
+    // ?view=compact returns CompactExpense rows instead of full entities on list endpoints
+    private static ExpenseView<?> parseView(String view) {
+        try {
+            return ExpenseView.fromParameter(view);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+    
+    // Streams the user's full history (optionally limited to a date range) as NDJSON or CSV.
+    // Rows go from the database cursor to the response without being collected in memory.
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportExpenses(@RequestParam(defaultValue = "ndjson") String format,
+                                                                @RequestParam(required = false) LocalDate startDate,
+                                                                @RequestParam(required = false) LocalDate endDate,
+                                                                @RequestParam(defaultValue = "false") boolean gzip,
+                                                                AuthenticatedUser user) {
+        Long userId = user.id();
+        ExportFormat exportFormat;
+        try {
+            exportFormat = ExportFormat.fromParameter(format);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        StreamingResponseBody body = out -> {
+            if (gzip) {
+                try (ExportGzipStream compressed = new ExportGzipStream(out)) {
+                    expenseService.exportExpenses(userId, startDate, endDate, exportFormat, compressed);
+                    compressed.finish();
+                }
+            } else {
+                expenseService.exportExpenses(userId, startDate, endDate, exportFormat, out);
+            }
+        };
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(exportFormat.getMediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"expenses." + exportFormat.getExtension() + "\"");
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+    
+    // Closing only releases the deflater. It neither writes the gzip trailer nor closes the response, so an
+    // export that fails partway leaves the client a broken response rather than a well-formed truncated file.
+    private static final class ExportGzipStream extends GZIPOutputStream {
+
+        ExportGzipStream(OutputStream out) throws IOException {
+            super(out, 64 * 1024);
+        }
+
+        @Override
+        public void close() {
+            def.end();
+        }
+    }
+    
+    // Server-Sent Events for the user's committed changes: "created" (array of expenses), "updated"
+    // (the expense) and "deleted" ({"id": ...}). Each event's id is the user's data version; clients that
+    // reconnect with Last-Event-ID get what they missed, or a "reset" event meaning reload from the API.
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges(@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+                                    AuthenticatedUser user) {
+        return changeFeed.subscribe(user.id(), lastEventId);
+    }
+    
     // Analytics Endpoints
     @GetMapping("/total")
-    public ResponseEntity<BigDecimal> getTotalExpenses(@RequestHeader("Authorization") String authHeader) {
-        Long userId = getUserIdFromToken(authHeader);
+    public ResponseEntity<BigDecimal> getTotalExpenses(AuthenticatedUser user) {
+        Long userId = user.id();
         BigDecimal total = expenseService.getTotalExpensesByUserId(userId);
         return ResponseEntity.ok(total);
     }
     
     @GetMapping("/total/category/{category}")
     public ResponseEntity<BigDecimal> getTotalExpensesByCategory(@PathVariable String category,
-                                                                @RequestHeader("Authorization") String authHeader) {
-        Long userId = getUserIdFromToken(authHeader);
+                                                                AuthenticatedUser user) {
+        Long userId = user.id();
         BigDecimal total = expenseService.getTotalExpensesByUserIdAndCategory(userId, category);
         return ResponseEntity.ok(total);
     }
@@ -153,8 +365,8 @@ public class ExpenseController {
     @GetMapping("/total/date-range")
     public ResponseEntity<BigDecimal> getTotalExpensesByDateRange(@RequestParam LocalDate startDate,
                                                                  @RequestParam LocalDate endDate,
-                                                                 @RequestHeader("Authorization") String authHeader) {
-        Long userId = getUserIdFromToken(authHeader);
+                                                                 AuthenticatedUser user) {
+        Long userId = user.id();
         BigDecimal total = expenseService.getTotalExpensesByUserIdAndDateRange(userId, startDate, endDate);
         return ResponseEntity.ok(total);
     }
@@ -162,31 +374,53 @@ public class ExpenseController {
     @GetMapping("/total/monthly/{year}/{month}")
     public ResponseEntity<BigDecimal> getMonthlyTotal(@PathVariable int year,
                                                      @PathVariable int month,
-                                                     @RequestHeader("Authorization") String authHeader) {
-        Long userId = getUserIdFromToken(authHeader);
+                                                     AuthenticatedUser user) {
+        Long userId = user.id();
         BigDecimal total = expenseService.getMonthlyTotal(userId, year, month);
         return ResponseEntity.ok(total);
     }
     
     @GetMapping("/total/yearly/{year}")
     public ResponseEntity<BigDecimal> getYearlyTotal(@PathVariable int year,
-                                                    @RequestHeader("Authorization") String authHeader) {
-        Long userId = getUserIdFromToken(authHeader);
+                                                    AuthenticatedUser user) {
+        Long userId = user.id();
         BigDecimal total = expenseService.getYearlyTotal(userId, year);
         return ResponseEntity.ok(total);
     }
     
+    // One round trip for dashboards: e.g. /summary?from=2024-01-01&to=2024-12-31&groupBy=category,month
+    @GetMapping("/summary")
+    public ResponseEntity<ExpenseSummary> getSummary(@RequestParam(required = false) LocalDate from,
+                                                     @RequestParam(required = false) LocalDate to,
+                                                     @RequestParam(defaultValue = "category") List<String> groupBy,
+                                                     AuthenticatedUser user) {
+        Long userId = user.id();
+        List<SummaryDimension> dimensions = new ArrayList<>();
+        try {
+            for (String parameter : groupBy) {
+                SummaryDimension dimension = SummaryDimension.fromParameter(parameter);
+                if (!dimensions.contains(dimension)) {
+                    dimensions.add(dimension);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        ExpenseSummary summary = expenseService.getSummary(userId, from, to, dimensions);
+        return ResponseEntity.ok(summary);
+    }
+    
     // Metadata Endpoints
     @GetMapping("/categories")
-    public ResponseEntity<List<String>> getCategories(@RequestHeader("Authorization") String authHeader) {
-        Long userId = getUserIdFromToken(authHeader);
+    public ResponseEntity<List<String>> getCategories(AuthenticatedUser user) {
+        Long userId = user.id();
         List<String> categories = expenseService.getCategoriesByUserId(userId);
         return ResponseEntity.ok(categories);
     }
     
     @GetMapping("/payment-methods")
-    public ResponseEntity<List<String>> getPaymentMethods(@RequestHeader("Authorization") String authHeader) {
-        Long userId = getUserIdFromToken(authHeader);
+    public ResponseEntity<List<String>> getPaymentMethods(AuthenticatedUser user) {
+        Long userId = user.id();
         List<String> paymentMethods = expenseService.getPaymentMethodsByUserId(userId);
         return ResponseEntity.ok(paymentMethods);
     }
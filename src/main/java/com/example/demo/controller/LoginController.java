@@ -1,15 +1,18 @@
 package com.example.demo.controller;
 
+import com.example.demo.exception.PasswordHashingBusyException;
 import com.example.demo.model.Login;
 import com.example.demo.model.LoginRequest;
 import com.example.demo.model.LoginResponse;
 import com.example.demo.service.LoginService;
 // import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 // import java.util.Optional;
 
 @RestController
@@ -45,6 +48,8 @@ public class LoginController {
         try {
             Login updated = loginService.updateLogin(id, login);
             return ResponseEntity.ok(updated);
+        } catch (PasswordHashingBusyException e) {
+            throw e;
         } catch (RuntimeException e) {
             return ResponseEntity.notFound().build();
         }
@@ -56,16 +61,20 @@ public class LoginController {
     //     loginService.deleteLogin(id);
     // }
 
+    // Completes asynchronously, so the request thread is released while BCrypt runs
     @PostMapping("/login")
-    public ResponseEntity<LoginResponse> login(@RequestBody LoginRequest loginRequest) {
-        boolean authenticated = loginService.authenticate(loginRequest.getEmail(), loginRequest.getPassword());
-        if (authenticated) {
-            String token = loginService.generateTokenForUser(loginRequest.getEmail());
-            LoginResponse response = new LoginResponse(token, loginRequest.getEmail(), "Login successful");
-            return ResponseEntity.ok(response);
-        } else {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                    .body(new LoginResponse(null, null, "Invalid credentials"));
-        }
+    public CompletableFuture<ResponseEntity<LoginResponse>> login(@RequestBody LoginRequest loginRequest) {
+        return loginService.login(loginRequest.getEmail(), loginRequest.getPassword())
+                .thenApply(token -> token
+                        .map(value -> ResponseEntity.ok(new LoginResponse(value, loginRequest.getEmail(), "Login successful")))
+                        .orElseGet(() -> ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                                .body(new LoginResponse(null, null, "Invalid credentials"))));
+    }
+
+    @ExceptionHandler(PasswordHashingBusyException.class)
+    public ResponseEntity<LoginResponse> hashingBusy(PasswordHashingBusyException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(new LoginResponse(null, null, e.getMessage()));
     }
 } 
\ No newline at end of file
@@ -0,0 +1,95 @@
+package com.example.demo.controller;
+
+import com.example.demo.config.CacheConfig;
+import com.example.demo.filter.ConcurrencyLimitFilter;
+import com.example.demo.service.CustomUserDetailsService;
+import com.example.demo.service.PasswordHasher;
+import com.example.demo.util.JwtUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/stats")
+public class StatsController {
+
+    private final JwtUtil jwtUtil;
+    private final CustomUserDetailsService userDetailsService;
+    private final CacheManager cacheManager;
+    private final ConcurrencyLimitFilter concurrencyLimitFilter;
+    private final PasswordHasher passwordHasher;
+    private final boolean virtualThreads;
+
+    public StatsController(JwtUtil jwtUtil, CustomUserDetailsService userDetailsService, CacheManager cacheManager,
+                           ObjectProvider<ConcurrencyLimitFilter> concurrencyLimitFilter, PasswordHasher passwordHasher,
+                           @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.jwtUtil = jwtUtil;
+        this.userDetailsService = userDetailsService;
+        this.cacheManager = cacheManager;
+        // Absent unless requests are limited, see ConcurrencyLimitFilter
+        this.concurrencyLimitFilter = concurrencyLimitFilter.getIfAvailable();
+        this.passwordHasher = passwordHasher;
+        this.virtualThreads = virtualThreads && Runtime.version().feature() >= 21;
+    }
+
+    @GetMapping("/cache")
+    public Map<String, Map<String, Object>> getCacheStats() {
+        Map<String, Map<String, Object>> stats = new LinkedHashMap<>();
+        stats.put("jwt", toMap(jwtUtil.getTokenCacheStats(), jwtUtil.getTokenCacheSize()));
+        stats.put("userDetails", toMap(userDetailsService.getCacheStats(), userDetailsService.getCacheSize()));
+        if (cacheManager.getCache(CacheConfig.ANALYTICS_CACHE) instanceof CaffeineCache analytics) {
+            Cache<Object, Object> cache = analytics.getNativeCache();
+            stats.put("analytics", toMap(cache.stats(), cache.estimatedSize()));
+        }
+        return stats;
+    }
+
+    @GetMapping("/requests")
+    public Map<String, Object> getRequestStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("virtualThreads", virtualThreads);
+        stats.put("limited", concurrencyLimitFilter != null);
+        if (concurrencyLimitFilter == null) {
+            return stats;
+        }
+        stats.put("maxConcurrentRequests", concurrencyLimitFilter.getMaxConcurrentRequests());
+        stats.put("inFlight", concurrencyLimitFilter.getInFlight());
+        stats.put("queued", concurrencyLimitFilter.getQueued());
+        stats.put("rejected", concurrencyLimitFilter.getRejected());
+        return stats;
+    }
+
+    @GetMapping("/password-hashing")
+    public Map<String, Object> getPasswordHashingStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("strength", passwordHasher.getStrength());
+        stats.put("threads", passwordHasher.getThreads());
+        stats.put("active", passwordHasher.getActive());
+        stats.put("queueDepth", passwordHasher.getQueueDepth());
+        stats.put("queueCapacity", passwordHasher.getQueueCapacity());
+        stats.put("rejected", passwordHasher.getRejected());
+        stats.put("hashes", passwordHasher.getHashCount());
+        stats.put("averageMillis", passwordHasher.getAverageHashMillis());
+        stats.put("maxMillis", passwordHasher.getMaxHashMillis());
+        return stats;
+    }
+
+    private static Map<String, Object> toMap(CacheStats cacheStats, long size) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("size", size);
+        map.put("hitCount", cacheStats.hitCount());
+        map.put("missCount", cacheStats.missCount());
+        map.put("hitRate", cacheStats.hitRate());
+        map.put("evictionCount", cacheStats.evictionCount());
+        return map;
+    }
+}
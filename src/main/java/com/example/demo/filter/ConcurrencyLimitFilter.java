@@ -0,0 +1,93 @@
+package com.example.demo.filter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+// Bounds how many /api requests run at once. With platform threads Tomcat's pool (200) already does
+// this, so the filter only exists with virtual threads (VIRTUAL_THREADS=true), where every connection
+// gets a thread and without a bound thousands of requests would queue inside HikariCP and fail with
+// connection timeouts, or when MAX_CONCURRENT_REQUESTS is set explicitly.
+// Signing up and logging in are not counted: they hold no connection while hashing, which
+// PasswordHasher bounds on its own, and a busy server should still let users in.
+// Excess requests wait up to REQUEST_QUEUE_TIMEOUT_MS for a slot, then get 503 with Retry-After.
+// The limit defaults to twice the connection pool size (DB_POOL_SIZE): each request holds at most one
+// connection, and for part of its time (authentication, serialization, writing the response) none,
+// so a small overlap keeps the pool busy while anything beyond it would only wait inside HikariCP.
+@Component
+@ConditionalOnExpression("${spring.threads.virtual.enabled:false} or ${MAX_CONCURRENT_REQUESTS:0} > 0")
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    private final Semaphore permits;
+    private final int maxConcurrentRequests;
+    private final long queueTimeoutMillis;
+    private final Counter rejected;
+
+    public ConcurrencyLimitFilter(@Value("${MAX_CONCURRENT_REQUESTS:0}") int maxConcurrentRequests,
+                                  @Value("${spring.datasource.hikari.maximum-pool-size:10}") int poolSize,
+                                  @Value("${REQUEST_QUEUE_TIMEOUT_MS:2000}") long queueTimeoutMillis,
+                                  MeterRegistry meterRegistry) {
+        // 0 (the default) derives the limit from the pool size
+        if (maxConcurrentRequests <= 0) {
+            maxConcurrentRequests = 2 * poolSize;
+        }
+        this.permits = new Semaphore(maxConcurrentRequests, true);
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.queueTimeoutMillis = queueTimeoutMillis;
+        this.rejected = Counter.builder("http.server.requests.rejected").register(meterRegistry);
+        Gauge.builder("http.server.requests.in.flight", this, ConcurrencyLimitFilter::getInFlight).register(meterRegistry);
+        Gauge.builder("http.server.requests.queued", this, ConcurrencyLimitFilter::getQueued).register(meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String uri = request.getRequestURI();
+        return !uri.startsWith("/api/") || uri.equals("/api/logins/login")
+                || (uri.equals("/api/logins") && "POST".equals(request.getMethod()));
+    }
+
+    // Streamed responses (export) continue on an async thread after the permit is released
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(queueTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            rejected.increment();
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Server busy, retry shortly");
+            return;
+        }
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            permits.release();
+        }
+    }
+
+    public int getMaxConcurrentRequests() { return maxConcurrentRequests; }
+    public int getInFlight() { return maxConcurrentRequests - permits.availablePermits(); }
+    public int getQueued() { return permits.getQueueLength(); }
+    public long getRejected() { return (long) rejected.count(); }
+}
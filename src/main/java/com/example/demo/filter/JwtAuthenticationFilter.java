@@ -1,27 +1,31 @@
 package com.example.demo.filter;
 
+import com.example.demo.model.AuthenticatedUser;
+import com.example.demo.service.CustomUserDetailsService;
 import com.example.demo.util.JwtUtil;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.Collections;
 
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtUtil jwtUtil;
-    private final UserDetailsService userDetailsService;
+    private final CustomUserDetailsService userDetailsService;
 
-    public JwtAuthenticationFilter(JwtUtil jwtUtil, UserDetailsService userDetailsService) {
+    public JwtAuthenticationFilter(JwtUtil jwtUtil, CustomUserDetailsService userDetailsService) {
         this.jwtUtil = jwtUtil;
         this.userDetailsService = userDetailsService;
     }
@@ -39,22 +43,31 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         
         try {
             final String jwt = authHeader.substring(7);
-            final String email = jwtUtil.extractEmail(jwt);
+            // Signature and expiry are verified exactly once here
+            final Claims claims = jwtUtil.parseClaims(jwt);
+            final String email = claims.getSubject();
             
             if (email != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                UserDetails userDetails = userDetailsService.loadUserByUsername(email);
-                
-                if (jwtUtil.validateToken(jwt)) {
-                    UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
-                            userDetails, null, userDetails.getAuthorities());
-                    authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                    SecurityContextHolder.getContext().setAuthentication(authToken);
+                // The account must still exist under the token's email and id: a deleted account, or one whose
+                // email moved to someone else, loses access at once rather than when the token expires.
+                // The lookup is served from the user cache, which account changes evict
+                AuthenticatedUser user = userDetailsService.loadAuthenticatedUser(email);
+                Long userId = jwtUtil.extractUserId(claims);
+                if (userId != null && !userId.equals(user.id())) {
+                    throw new UsernameNotFoundException("Token for user " + userId + " no longer matches " + email);
                 }
+                
+                UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
+                        user, null, Collections.singletonList(new SimpleGrantedAuthority("USER")));
+                authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                SecurityContextHolder.getContext().setAuthentication(authToken);
             }
+        } catch (UsernameNotFoundException e) {
+            logger.debug("Token for an account that no longer exists: " + e.getMessage());
         } catch (Exception e) {
             logger.error("Cannot set user authentication: {}", e);
         }
         
         filterChain.doFilter(request, response);
     }
-} 
\ No newline at end of file
+}
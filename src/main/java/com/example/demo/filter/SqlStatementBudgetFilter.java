@@ -0,0 +1,67 @@
+package com.example.demo.filter;
+
+import com.example.demo.util.SqlStatementCounter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+// Records how many SQL statements and entity loads each API request caused, per route, and warns
+// when a request exceeds SQL_STATEMENT_BUDGET statements. Work done after the request thread
+// returns (streamed exports) runs on another thread and is not counted.
+@Component
+public class SqlStatementBudgetFilter extends OncePerRequestFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(SqlStatementBudgetFilter.class);
+
+    private final SqlStatementCounter counter;
+    private final MeterRegistry meterRegistry;
+    private final int budget;
+
+    public SqlStatementBudgetFilter(SqlStatementCounter counter, MeterRegistry meterRegistry,
+                                    @Value("${SQL_STATEMENT_BUDGET:10}") int budget) {
+        this.counter = counter;
+        this.meterRegistry = meterRegistry;
+        this.budget = budget;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith("/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        try (SqlStatementCounter.Scope scope = counter.open()) {
+            filterChain.doFilter(request, response);
+            // Route template such as /api/expenses/{id}, so ids do not create a series each
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            String uri = pattern != null ? pattern.toString() : "UNKNOWN";
+            record("http.server.requests.sql.statements", request.getMethod(), uri, scope.getStatements());
+            record("http.server.requests.entities.loaded", request.getMethod(), uri, scope.getEntitiesLoaded());
+            if (scope.getStatements() > budget) {
+                log.warn("{} {} ran {} SQL statements, budget is {}", request.getMethod(), uri,
+                        scope.getStatements(), budget);
+            }
+        }
+    }
+
+    private void record(String name, String method, String uri, int amount) {
+        DistributionSummary.builder(name)
+                .tag("method", method)
+                .tag("uri", uri)
+                .register(meterRegistry)
+                .record(amount);
+    }
+}
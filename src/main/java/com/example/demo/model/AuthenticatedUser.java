@@ -0,0 +1,6 @@
+package com.example.demo.model;
+
+// Principal placed in the SecurityContext by JwtAuthenticationFilter.
+// Carries everything controllers need so they never re-parse the token or query login.
+public record AuthenticatedUser(Long id, String email) {
+}
@@ -0,0 +1,10 @@
+package com.example.demo.model;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+// List row for ?view=compact: selected straight into this record, so description and the audit
+// timestamps are never read and no managed entity is created. GET /api/expenses/{id} returns the full row.
+public record CompactExpense(Long id, String item, BigDecimal cost, LocalDate expenseDate,
+                             String category, String paymentMethod) {
+}
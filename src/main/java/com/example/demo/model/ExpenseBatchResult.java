@@ -0,0 +1,19 @@
+package com.example.demo.model;
+
+import java.util.List;
+
+// Outcome of POST /api/expenses/batch; results are in request order
+public record ExpenseBatchResult(int created, int rejected, List<Item> results) {
+
+    // id is set for created rows, error for rejected ones
+    public record Item(int index, Long id, String error) {
+
+        public static Item created(int index, Long id) {
+            return new Item(index, id, null);
+        }
+
+        public static Item rejected(int index, String error) {
+            return new Item(index, null, error);
+        }
+    }
+}
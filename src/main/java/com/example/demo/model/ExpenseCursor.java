@@ -0,0 +1,51 @@
+package com.example.demo.model;
+
+import com.example.demo.exception.InvalidCursorException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Base64;
+
+// Position in the (expense_date DESC, id DESC) ordering, exchanged with clients as an opaque token.
+// The next page starts strictly after this position.
+public record ExpenseCursor(LocalDate expenseDate, Long id) {
+
+    // Sorts before every stored row, so the first page uses the same keyset query as the rest
+    public static final ExpenseCursor FIRST = new ExpenseCursor(LocalDate.of(9999, 12, 31), Long.MAX_VALUE);
+
+    public static ExpenseCursor after(Expense expense) {
+        return new ExpenseCursor(expense.getExpenseDate(), expense.getId());
+    }
+
+    public static ExpenseCursor after(CompactExpense expense) {
+        return new ExpenseCursor(expense.expenseDate(), expense.id());
+    }
+
+    public String encode() {
+        String raw = expenseDate + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static ExpenseCursor decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return FIRST;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(':');
+            return new ExpenseCursor(parseDate(raw.substring(0, separator)),
+                    Long.parseLong(raw.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new InvalidCursorException(cursor);
+        }
+    }
+
+    // A date from a cursor; one outside years 1-9999 would fail the query rather than the decode
+    static LocalDate parseDate(String value) {
+        LocalDate date = LocalDate.parse(value);
+        if (date.getYear() < 1 || date.isAfter(FIRST.expenseDate())) {
+            throw new IllegalArgumentException("Date out of range: " + value);
+        }
+        return date;
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.demo.model;
+
+// Kinds of change sent by GET /api/expenses/stream; the name is the SSE event name
+public enum ExpenseEventType {
+    // data: array of the created expenses (one per expense in a batch)
+    CREATED("created"),
+    // data: the expense as updated
+    UPDATED("updated"),
+    // data: {"id": <expense id>}
+    DELETED("deleted");
+
+    private final String eventName;
+
+    ExpenseEventType(String eventName) {
+        this.eventName = eventName;
+    }
+
+    public String getEventName() { return eventName; }
+}
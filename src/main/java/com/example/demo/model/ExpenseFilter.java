@@ -0,0 +1,10 @@
+package com.example.demo.model;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+// Criteria for GET /api/expenses/query; null fields are not filtered on.
+// text matches item or description as a case-insensitive substring.
+public record ExpenseFilter(String category, String paymentMethod, BigDecimal minCost, BigDecimal maxCost,
+                            LocalDate startDate, LocalDate endDate, String text) {
+}
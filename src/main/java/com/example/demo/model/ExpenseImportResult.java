@@ -0,0 +1,13 @@
+package com.example.demo.model;
+
+import java.util.List;
+
+// Summary of a CSV import. Chunks commit independently, so rowsImported stays valid
+// even when later chunks failed. Only the first errors are listed; see errorsTruncated.
+public record ExpenseImportResult(long rowsRead, long rowsImported, long rowsRejected,
+                                  int chunksCommitted, int chunksFailed,
+                                  List<LineError> errors, boolean errorsTruncated) {
+
+    public record LineError(long line, String message) {
+    }
+}
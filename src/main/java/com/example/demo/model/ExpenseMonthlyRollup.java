@@ -0,0 +1,45 @@
+package com.example.demo.model;
+
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+// Sum and count of a user's expenses per month, category and payment method (V6).
+// Written only through the upsert queries in ExpenseMonthlyRollupRepository.
+@Entity
+@Table(name = "expense_monthly_rollups")
+@IdClass(ExpenseMonthlyRollupId.class)
+public class ExpenseMonthlyRollup {
+    @Id
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    // First day of the month
+    @Id
+    @Column(name = "year_month", nullable = false)
+    private LocalDate yearMonth;
+
+    @Id
+    @Column(name = "category", nullable = false)
+    private String category;
+
+    @Id
+    @Column(name = "payment_method", nullable = false)
+    private String paymentMethod;
+
+    @Column(name = "total_cost", nullable = false, precision = 19, scale = 2)
+    private BigDecimal totalCost;
+
+    @Column(name = "expense_count", nullable = false)
+    private long expenseCount;
+
+    public ExpenseMonthlyRollup() {}
+
+    // Getters
+    public Long getUserId() { return userId; }
+    public LocalDate getYearMonth() { return yearMonth; }
+    public String getCategory() { return category; }
+    public String getPaymentMethod() { return paymentMethod; }
+    public BigDecimal getTotalCost() { return totalCost; }
+    public long getExpenseCount() { return expenseCount; }
+}
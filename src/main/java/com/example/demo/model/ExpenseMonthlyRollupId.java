@@ -0,0 +1,50 @@
+package com.example.demo.model;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.Objects;
+
+public class ExpenseMonthlyRollupId implements Serializable {
+    private Long userId;
+    private LocalDate yearMonth;
+    private String category;
+    private String paymentMethod;
+
+    public ExpenseMonthlyRollupId() {}
+
+    public ExpenseMonthlyRollupId(Long userId, LocalDate yearMonth, String category, String paymentMethod) {
+        this.userId = userId;
+        this.yearMonth = yearMonth;
+        this.category = category;
+        this.paymentMethod = paymentMethod;
+    }
+
+    // Key of the rollup row an expense contributes to
+    public static ExpenseMonthlyRollupId of(Expense expense) {
+        return of(expense.getUserId(), expense.getExpenseDate(), expense.getCategory(), expense.getPaymentMethod());
+    }
+
+    public static ExpenseMonthlyRollupId of(Long userId, LocalDate expenseDate, String category, String paymentMethod) {
+        return new ExpenseMonthlyRollupId(userId, expenseDate.withDayOfMonth(1),
+                category != null ? category : "",
+                paymentMethod != null ? paymentMethod : "");
+    }
+
+    public Long getUserId() { return userId; }
+    public LocalDate getYearMonth() { return yearMonth; }
+    public String getCategory() { return category; }
+    public String getPaymentMethod() { return paymentMethod; }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ExpenseMonthlyRollupId that)) return false;
+        return Objects.equals(userId, that.userId) && Objects.equals(yearMonth, that.yearMonth)
+                && Objects.equals(category, that.category) && Objects.equals(paymentMethod, that.paymentMethod);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(userId, yearMonth, category, paymentMethod);
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.demo.model;
+
+import java.util.List;
+
+// One page of a keyset-paginated listing; nextCursor is null on the last page
+public record ExpensePage<T>(List<T> items, String nextCursor) {
+}
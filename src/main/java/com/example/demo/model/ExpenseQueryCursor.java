@@ -0,0 +1,42 @@
+package com.example.demo.model;
+
+import com.example.demo.exception.InvalidCursorException;
+import org.springframework.data.domain.Sort;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// Position in a /query result ordered by (sort attribute, id), exchanged as an opaque token.
+// The sort and direction are encoded too, so a cursor cannot be replayed against a different order.
+public record ExpenseQueryCursor(ExpenseSort sort, Sort.Direction direction, Comparable<?> value, Long id) {
+
+    public static ExpenseQueryCursor after(ExpenseSort sort, Sort.Direction direction, Expense expense) {
+        return new ExpenseQueryCursor(sort, direction, sort.valueOf(expense), expense.getId());
+    }
+
+    public static ExpenseQueryCursor after(ExpenseSort sort, Sort.Direction direction, CompactExpense expense) {
+        return new ExpenseQueryCursor(sort, direction, sort.valueOf(expense), expense.id());
+    }
+
+    public String encode() {
+        String raw = sort.getAttribute() + ":" + direction + ":" + id + ":" + value;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Returns null for the first page
+    public static ExpenseQueryCursor decode(String cursor, ExpenseSort sort, Sort.Direction direction) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split(":", 4);
+            if (!parts[0].equals(sort.getAttribute()) || Sort.Direction.fromString(parts[1]) != direction) {
+                throw new InvalidCursorException(cursor);
+            }
+            return new ExpenseQueryCursor(sort, direction, sort.parse(parts[3]), Long.parseLong(parts[2]));
+        } catch (RuntimeException e) {
+            throw new InvalidCursorException(cursor);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.demo.model;
+
+import com.example.demo.exception.InvalidCursorException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// Position in the (score DESC, id DESC) ordering of search results, exchanged as an opaque token.
+// Float.toString round-trips exactly, so the score compares equal to the one computed by the database.
+public record ExpenseSearchCursor(float score, Long id) {
+
+    // Scores never exceed 1, so this sorts before every result
+    public static final ExpenseSearchCursor FIRST = new ExpenseSearchCursor(2f, Long.MAX_VALUE);
+
+    public static ExpenseSearchCursor after(ExpenseSearchHit hit) {
+        return new ExpenseSearchCursor(hit.score(), hit.expense().getId());
+    }
+
+    public String encode() {
+        String raw = score + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static ExpenseSearchCursor decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return FIRST;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(':');
+            return new ExpenseSearchCursor(Float.parseFloat(raw.substring(0, separator)),
+                    Long.parseLong(raw.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new InvalidCursorException(cursor);
+        }
+    }
+}
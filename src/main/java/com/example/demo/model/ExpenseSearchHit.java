@@ -0,0 +1,5 @@
+package com.example.demo.model;
+
+// One search result; score is pg_trgm's word_similarity between the query and item + description (0..1)
+public record ExpenseSearchHit(Expense expense, float score) {
+}
@@ -0,0 +1,46 @@
+package com.example.demo.model;
+
+import java.math.BigDecimal;
+import java.util.function.Function;
+
+// Sort keys accepted by GET /api/expenses/query?sort=...; id breaks ties so the order is total
+public enum ExpenseSort {
+    EXPENSE_DATE("expenseDate", Expense::getExpenseDate, CompactExpense::expenseDate, ExpenseCursor::parseDate),
+    COST("cost", Expense::getCost, CompactExpense::cost, BigDecimal::new);
+
+    private final String attribute;
+    private final Function<Expense, Comparable<?>> getter;
+    private final Function<CompactExpense, Comparable<?>> compactGetter;
+    private final Function<String, Comparable<?>> parser;
+
+    ExpenseSort(String attribute, Function<Expense, Comparable<?>> getter,
+                Function<CompactExpense, Comparable<?>> compactGetter, Function<String, Comparable<?>> parser) {
+        this.attribute = attribute;
+        this.getter = getter;
+        this.compactGetter = compactGetter;
+        this.parser = parser;
+    }
+
+    public String getAttribute() { return attribute; }
+
+    public Comparable<?> valueOf(Expense expense) {
+        return getter.apply(expense);
+    }
+
+    public Comparable<?> valueOf(CompactExpense expense) {
+        return compactGetter.apply(expense);
+    }
+
+    public Comparable<?> parse(String value) {
+        return parser.apply(value);
+    }
+
+    public static ExpenseSort fromParameter(String parameter) {
+        for (ExpenseSort value : values()) {
+            if (value.attribute.equalsIgnoreCase(parameter)) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported sort: " + parameter);
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.demo.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.List;
+
+// Response of GET /api/expenses/summary: one entry per group plus the overall figures
+public record ExpenseSummary(LocalDate from, LocalDate to, List<String> groupBy, Group overall, List<Group> groups) {
+
+    // Keys that were not grouped by are omitted; month is formatted as yyyy-MM
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record Group(String category, String paymentMethod, String month,
+                        BigDecimal total, long count, BigDecimal min, BigDecimal max, BigDecimal average) {
+
+        public Group(String category, String paymentMethod, String month,
+                     BigDecimal total, long count, BigDecimal min, BigDecimal max) {
+            this(category, paymentMethod, month, total, count, min, max,
+                    count == 0 ? null : total.divide(BigDecimal.valueOf(count), 2, RoundingMode.HALF_UP));
+        }
+    }
+
+    // Combines the groups in Java; every expense in the range belongs to exactly one group
+    public static Group overall(List<Group> groups) {
+        BigDecimal total = BigDecimal.ZERO;
+        long count = 0;
+        BigDecimal min = null;
+        BigDecimal max = null;
+        for (Group group : groups) {
+            total = total.add(group.total());
+            count += group.count();
+            min = min == null || group.min().compareTo(min) < 0 ? group.min() : min;
+            max = max == null || group.max().compareTo(max) > 0 ? group.max() : max;
+        }
+        return new Group(null, null, null, total, count, min, max);
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.demo.model;
+
+import org.springframework.data.domain.Sort;
+
+import java.util.function.Function;
+
+// Row shape of list responses, chosen with ?view=full|compact.
+// Carries the projection type passed to ExpenseRepository and how to read keyset positions from a row.
+public final class ExpenseView<T> {
+
+    public static final ExpenseView<Expense> FULL = new ExpenseView<>("full", Expense.class,
+            ExpenseCursor::after, (sort, direction, row) -> ExpenseQueryCursor.after(sort, direction, row));
+    public static final ExpenseView<CompactExpense> COMPACT = new ExpenseView<>("compact", CompactExpense.class,
+            ExpenseCursor::after, (sort, direction, row) -> ExpenseQueryCursor.after(sort, direction, row));
+
+    private final String parameter;
+    private final Class<T> type;
+    private final Function<T, ExpenseCursor> position;
+    private final QueryPosition<T> queryPosition;
+
+    private ExpenseView(String parameter, Class<T> type, Function<T, ExpenseCursor> position,
+                        QueryPosition<T> queryPosition) {
+        this.parameter = parameter;
+        this.type = type;
+        this.position = position;
+        this.queryPosition = queryPosition;
+    }
+
+    public Class<T> getType() { return type; }
+
+    // Position in the default (expense_date DESC, id DESC) order
+    public ExpenseCursor positionOf(T row) {
+        return position.apply(row);
+    }
+
+    // Position in a /query result ordered by sort and direction
+    public ExpenseQueryCursor positionOf(T row, ExpenseSort sort, Sort.Direction direction) {
+        return queryPosition.of(sort, direction, row);
+    }
+
+    public static ExpenseView<?> fromParameter(String parameter) {
+        for (ExpenseView<?> view : new ExpenseView<?>[] {FULL, COMPACT}) {
+            if (view.parameter.equalsIgnoreCase(parameter)) {
+                return view;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported view: " + parameter);
+    }
+
+    private interface QueryPosition<T> {
+        ExpenseQueryCursor of(ExpenseSort sort, Sort.Direction direction, T row);
+    }
+}
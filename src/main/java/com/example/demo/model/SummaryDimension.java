@@ -0,0 +1,25 @@
+package com.example.demo.model;
+
+// Grouping keys accepted by GET /api/expenses/summary?groupBy=...
+public enum SummaryDimension {
+    CATEGORY("category"),
+    PAYMENT_METHOD("paymentMethod"),
+    MONTH("month");
+
+    private final String parameter;
+
+    SummaryDimension(String parameter) {
+        this.parameter = parameter;
+    }
+
+    public String getParameter() { return parameter; }
+
+    public static SummaryDimension fromParameter(String parameter) {
+        for (SummaryDimension value : values()) {
+            if (value.parameter.equalsIgnoreCase(parameter.trim())) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported groupBy: " + parameter);
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.demo.model;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+// Per-user watermark of expense data (V9), also the id of the user's latest change event (V11).
+// Written only through UserDataVersionRepository.bump.
+@Entity
+@Table(name = "user_data_versions")
+public class UserDataVersion {
+    @Id
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "version", nullable = false)
+    private long version;
+
+    @Column(name = "modified_at", nullable = false)
+    private Instant modifiedAt;
+
+    public UserDataVersion() {}
+
+    // Getters
+    public Long getUserId() { return userId; }
+    public long getVersion() { return version; }
+    public Instant getModifiedAt() { return modifiedAt; }
+}
@@ -0,0 +1,76 @@
+package com.example.demo.repository;
+
+import com.example.demo.model.ExpenseMonthlyRollup;
+import com.example.demo.model.ExpenseMonthlyRollupId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface ExpenseMonthlyRollupRepository extends JpaRepository<ExpenseMonthlyRollup, ExpenseMonthlyRollupId> {
+    
+    // Adds a (possibly negative) delta to one rollup row, creating it if needed
+    @Modifying
+    @Query(value = "INSERT INTO expense_monthly_rollups (user_id, year_month, category, payment_method, total_cost, expense_count) " +
+                   "VALUES (:userId, :yearMonth, :category, :paymentMethod, :cost, :count) " +
+                   "ON CONFLICT (user_id, year_month, category, payment_method) DO UPDATE " +
+                   "SET total_cost = expense_monthly_rollups.total_cost + EXCLUDED.total_cost, " +
+                   "expense_count = expense_monthly_rollups.expense_count + EXCLUDED.expense_count",
+           nativeQuery = true)
+    int applyDelta(
+        @Param("userId") Long userId, 
+        @Param("yearMonth") LocalDate yearMonth, 
+        @Param("category") String category, 
+        @Param("paymentMethod") String paymentMethod, 
+        @Param("cost") BigDecimal cost, 
+        @Param("count") long count);
+    
+    // Get total cost for a user
+    @Query("SELECT COALESCE(SUM(r.totalCost), 0) FROM ExpenseMonthlyRollup r WHERE r.userId = :userId")
+    BigDecimal getTotalCostByUserId(@Param("userId") Long userId);
+    
+    // Get total cost by category for a user
+    @Query("SELECT COALESCE(SUM(r.totalCost), 0) FROM ExpenseMonthlyRollup r WHERE r.userId = :userId AND r.category = :category")
+    BigDecimal getTotalCostByUserIdAndCategory(
+        @Param("userId") Long userId, 
+        @Param("category") String category);
+    
+    // Get total cost for whole months; both bounds are first-of-month dates and inclusive
+    @Query("SELECT COALESCE(SUM(r.totalCost), 0) FROM ExpenseMonthlyRollup r WHERE r.userId = :userId AND r.yearMonth BETWEEN :fromMonth AND :toMonth")
+    BigDecimal getTotalCostByUserIdAndMonths(
+        @Param("userId") Long userId, 
+        @Param("fromMonth") LocalDate fromMonth, 
+        @Param("toMonth") LocalDate toMonth);
+    
+    // Rebuild: drop a user's rollups and recompute them from the raw expenses
+    @Modifying
+    @Query(value = "DELETE FROM expense_monthly_rollups WHERE user_id = :userId", nativeQuery = true)
+    int deleteByUserId(@Param("userId") Long userId);
+    
+    @Modifying
+    @Query(value = "INSERT INTO expense_monthly_rollups (user_id, year_month, category, payment_method, total_cost, expense_count) " +
+                   "SELECT user_id, CAST(date_trunc('month', expense_date) AS DATE), COALESCE(category, ''), " +
+                   "COALESCE(payment_method, ''), SUM(cost), COUNT(*) " +
+                   "FROM expenses WHERE user_id = :userId GROUP BY 1, 2, 3, 4",
+           nativeQuery = true)
+    int insertFromExpenses(@Param("userId") Long userId);
+    
+    // Consistency check: users whose non-empty rollup rows differ from an aggregate of the raw table
+    @Query(value = "SELECT DISTINCT user_id FROM (" +
+                   "SELECT * FROM expense_monthly_rollups WHERE expense_count <> 0 OR total_cost <> 0) r " +
+                   "FULL OUTER JOIN (" +
+                   "SELECT user_id, CAST(date_trunc('month', expense_date) AS DATE) AS year_month, " +
+                   "COALESCE(category, '') AS category, COALESCE(payment_method, '') AS payment_method, " +
+                   "SUM(cost) AS total_cost, COUNT(*) AS expense_count " +
+                   "FROM expenses GROUP BY 1, 2, 3, 4) x " +
+                   "USING (user_id, year_month, category, payment_method) " +
+                   "WHERE r.total_cost IS DISTINCT FROM x.total_cost OR r.expense_count IS DISTINCT FROM x.expense_count",
+           nativeQuery = true)
+    List<Long> findInconsistentUserIds();
+}
@@ -1,7 +1,9 @@
 package com.example.demo.repository;
 
 import com.example.demo.model.Expense;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -11,37 +13,67 @@ import java.time.LocalDate;
 import java.util.List;
 
 @Repository
-public interface ExpenseRepository extends JpaRepository<Expense, Long> {
+public interface ExpenseRepository extends JpaRepository<Expense, Long>, JpaSpecificationExecutor<Expense>,
+        ExpenseRepositoryCustom {
+    
+    // Keyset pagination over (expense_date DESC, id DESC): rows strictly after the cursor position.
+    // The redundant "expense_date <= :afterDate" bound lets the index range scan start at the cursor.
+    String AFTER_CURSOR = " AND e.expenseDate <= :afterDate AND (e.expenseDate < :afterDate OR e.id < :afterId)";
+    String KEYSET_ORDER = " ORDER BY e.expenseDate DESC, e.id DESC";
+    
+    // The keyset finders take the row type: Expense for entities, or a record such as CompactExpense,
+    // for which Spring Data turns "SELECT e" into a constructor expression over just its columns
     
     // Find all expenses for a specific user
-    List<Expense> findByUserIdOrderByExpenseDateDesc(Long userId);
+    @Query("SELECT e FROM Expense e WHERE e.userId = :userId" + AFTER_CURSOR + KEYSET_ORDER)
+    <T> List<T> findPageByUserId(
+        @Param("userId") Long userId, 
+        @Param("afterDate") LocalDate afterDate, 
+        @Param("afterId") Long afterId, 
+        Pageable pageable,
+        Class<T> type);
     
     // Find expenses by user and category
-    List<Expense> findByUserIdAndCategoryOrderByExpenseDateDesc(Long userId, String category);
+    @Query("SELECT e FROM Expense e WHERE e.userId = :userId AND e.category = :category" + AFTER_CURSOR + KEYSET_ORDER)
+    <T> List<T> findPageByUserIdAndCategory(
+        @Param("userId") Long userId, 
+        @Param("category") String category, 
+        @Param("afterDate") LocalDate afterDate, 
+        @Param("afterId") Long afterId, 
+        Pageable pageable,
+        Class<T> type);
     
     // Find expenses by user and date range
-    List<Expense> findByUserIdAndExpenseDateBetweenOrderByExpenseDateDesc(
-        Long userId, LocalDate startDate, LocalDate endDate);
+    @Query("SELECT e FROM Expense e WHERE e.userId = :userId AND e.expenseDate BETWEEN :startDate AND :endDate" + AFTER_CURSOR + KEYSET_ORDER)
+    <T> List<T> findPageByUserIdAndDateRange(
+        @Param("userId") Long userId, 
+        @Param("startDate") LocalDate startDate, 
+        @Param("endDate") LocalDate endDate, 
+        @Param("afterDate") LocalDate afterDate, 
+        @Param("afterId") Long afterId, 
+        Pageable pageable,
+        Class<T> type);
     
     // Find expenses by user and cost range
-    @Query("SELECT e FROM Expense e WHERE e.userId = :userId AND e.cost BETWEEN :minCost AND :maxCost ORDER BY e.expenseDate DESC")
-    List<Expense> findByUserIdAndCostBetweenOrderByExpenseDateDesc(
+    @Query("SELECT e FROM Expense e WHERE e.userId = :userId AND e.cost BETWEEN :minCost AND :maxCost" + AFTER_CURSOR + KEYSET_ORDER)
+    <T> List<T> findPageByUserIdAndCostRange(
         @Param("userId") Long userId, 
         @Param("minCost") BigDecimal minCost, 
-        @Param("maxCost") BigDecimal maxCost);
+        @Param("maxCost") BigDecimal maxCost, 
+        @Param("afterDate") LocalDate afterDate, 
+        @Param("afterId") Long afterId, 
+        Pageable pageable,
+        Class<T> type);
     
     // Find expenses by user and payment method
-    List<Expense> findByUserIdAndPaymentMethodOrderByExpenseDateDesc(Long userId, String paymentMethod);
-    
-    // Find expenses by user and item name (case insensitive)
-    @Query("SELECT e FROM Expense e WHERE e.userId = :userId AND LOWER(e.item) LIKE LOWER(CONCAT('%', :itemName, '%')) ORDER BY e.expenseDate DESC")
-    List<Expense> findByUserIdAndItemContainingIgnoreCaseOrderByExpenseDateDesc(
+    @Query("SELECT e FROM Expense e WHERE e.userId = :userId AND e.paymentMethod = :paymentMethod" + AFTER_CURSOR + KEYSET_ORDER)
+    <T> List<T> findPageByUserIdAndPaymentMethod(
         @Param("userId") Long userId, 
-        @Param("itemName") String itemName);
-    
-    // Get total cost for a user
-    @Query("SELECT SUM(e.cost) FROM Expense e WHERE e.userId = :userId")
-    BigDecimal getTotalCostByUserId(@Param("userId") Long userId);
+        @Param("paymentMethod") String paymentMethod, 
+        @Param("afterDate") LocalDate afterDate, 
+        @Param("afterId") Long afterId, 
+        Pageable pageable,
+        Class<T> type);
     
     // Get total cost for a user in date range
     @Query("SELECT SUM(e.cost) FROM Expense e WHERE e.userId = :userId AND e.expenseDate BETWEEN :startDate AND :endDate")
@@ -50,12 +82,6 @@ public interface ExpenseRepository extends JpaRepository<Expense, Long> {
         @Param("startDate") LocalDate startDate, 
         @Param("endDate") LocalDate endDate);
     
-    // Get total cost by category for a user
-    @Query("SELECT SUM(e.cost) FROM Expense e WHERE e.userId = :userId AND e.category = :category")
-    BigDecimal getTotalCostByUserIdAndCategory(
-        @Param("userId") Long userId, 
-        @Param("category") String category);
-    
     // Get distinct categories for a user
     @Query("SELECT DISTINCT e.category FROM Expense e WHERE e.userId = :userId AND e.category IS NOT NULL")
     List<String> findDistinctCategoriesByUserId(@Param("userId") Long userId);
@@ -63,4 +89,7 @@ public interface ExpenseRepository extends JpaRepository<Expense, Long> {
     // Get distinct payment methods for a user
     @Query("SELECT DISTINCT e.paymentMethod FROM Expense e WHERE e.userId = :userId AND e.paymentMethod IS NOT NULL")
     List<String> findDistinctPaymentMethodsByUserId(@Param("userId") Long userId);
-} 
\ No newline at end of file
+    
+    // Distinguishes a failed If-Match from a missing expense after a conditional write matched nothing
+    boolean existsByIdAndUserId(Long id, Long userId);
+}
@@ -0,0 +1,43 @@
+package com.example.demo.repository;
+
+import com.example.demo.model.Expense;
+import com.example.demo.model.ExpenseMonthlyRollupId;
+import com.example.demo.model.ExpenseSearchCursor;
+import com.example.demo.model.ExpenseSearchHit;
+import com.example.demo.model.ExpenseSummary;
+import com.example.demo.model.SummaryDimension;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+// Queries whose shape depends on request parameters; implemented in ExpenseRepositoryCustomImpl
+public interface ExpenseRepositoryCustom {
+    
+    // Sum, count, min and max per group of the requested dimensions, in one GROUP BY query
+    List<ExpenseSummary.Group> summarize(Long userId, LocalDate startDate, LocalDate endDate,
+                                         List<SummaryDimension> groupBy);
+    
+    // Typo-tolerant search over item and description, best matches first, served by the trigram
+    // index from V7. Returns up to limit hits that sort after the cursor.
+    List<ExpenseSearchHit> search(Long userId, String query, ExpenseSearchCursor after, int limit);
+    
+    // Overwrites the user-editable columns of the user's expense in one UPDATE ... RETURNING.
+    // With patch, null values leave their column unchanged. A non-null expectedVersion must equal the row's
+    // version. Empty when the user has no expense with that id (at that version), or when the values would
+    // not change it.
+    Optional<Updated> update(Long id, Long userId, Long expectedVersion, Expense values, boolean patch);
+    
+    // Deletes the user's expense in one DELETE ... RETURNING, with the same expectedVersion check.
+    // Empty when the user has no expense with that id (at that version).
+    Optional<Deleted> delete(Long id, Long userId, Long expectedVersion);
+    
+    // The row after the update, and the rollup key and cost it had before
+    record Updated(Expense expense, ExpenseMonthlyRollupId previousKey, BigDecimal previousCost) {
+    }
+    
+    // Rollup key and cost of the deleted row
+    record Deleted(ExpenseMonthlyRollupId key, BigDecimal cost) {
+    }
+}
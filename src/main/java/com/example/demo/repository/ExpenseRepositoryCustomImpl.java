@@ -0,0 +1,198 @@
+package com.example.demo.repository;
+
+import com.example.demo.model.Expense;
+import com.example.demo.model.ExpenseMonthlyRollupId;
+import com.example.demo.model.ExpenseSearchCursor;
+import com.example.demo.model.ExpenseSearchHit;
+import com.example.demo.model.ExpenseSummary;
+import com.example.demo.model.SummaryDimension;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.query.NativeQuery;
+import org.hibernate.type.StandardBasicTypes;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+public class ExpenseRepositoryCustomImpl implements ExpenseRepositoryCustom {
+    
+    // Same expression as idx_expenses_user_search_trgm (V12); pg_trgm lower-cases on its own
+    static final String SEARCH_TEXT = "(e.item || ' ' || coalesce(e.description, ''))";
+    
+    // Rows match when the query is similar to some word run in the text (typos) or is a plain
+    // substring of it (queries shorter than a trigram). The trigram index narrows both conditions only
+    // when the query has a trigram; a shorter one is checked against every row of the user.
+    private static final String SEARCH_SQL =
+            "SELECT {e.*}, word_similarity(:query, " + SEARCH_TEXT + ") AS score FROM expenses e " +
+            "WHERE e.user_id = :userId AND (" + SEARCH_TEXT + " %> :query OR " + SEARCH_TEXT + " ILIKE :pattern) " +
+            "AND (word_similarity(:query, " + SEARCH_TEXT + ") < :afterScore " +
+            "OR (word_similarity(:query, " + SEARCH_TEXT + ") = :afterScore AND e.id < :afterId)) " +
+            "ORDER BY score DESC, e.id DESC LIMIT :limit";
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    // If-Match: a null expected version matches any row version
+    private static final String EXPECTED_VERSION =
+            " AND (CAST(:expectedVersion AS BIGINT) IS NULL OR version = :expectedVersion)";
+    
+    // The locked subquery reads the row as it is when the update applies, so the previous values
+    // reported for the rollups cannot be overtaken by a concurrent write. %s is the row of new values; a row
+    // they would not change is left alone, so it keeps its version and the caller records no write.
+    private static final String COLUMNS = "(item, cost, expense_date, category, description, payment_method, location)";
+    private static final String UPDATE_SQL =
+            "UPDATE expenses e SET " + COLUMNS + " = %1$s, updated_at = LOCALTIMESTAMP, version = e.version + 1 " +
+            "FROM (SELECT id, expense_date, category, payment_method, cost FROM expenses " +
+            "WHERE id = :id AND user_id = :userId" + EXPECTED_VERSION + " FOR UPDATE) old " +
+            "WHERE e.id = old.id " +
+            "AND (e.item, e.cost, e.expense_date, e.category, e.description, e.payment_method, e.location) IS DISTINCT FROM %1$s " +
+            "RETURNING {e.*}, old.expense_date AS old_expense_date, old.category AS old_category, " +
+            "old.payment_method AS old_payment_method, old.cost AS old_cost";
+    private static final String PUT_VALUES = "ROW(:item, :cost, :expenseDate, :category, :description, :paymentMethod, :location)";
+    private static final String PATCH_VALUES = "ROW(COALESCE(:item, e.item), COALESCE(:cost, e.cost), " +
+            "COALESCE(:expenseDate, e.expense_date), COALESCE(:category, e.category), " +
+            "COALESCE(:description, e.description), COALESCE(:paymentMethod, e.payment_method), " +
+            "COALESCE(:location, e.location))";
+    
+    private static final String DELETE_SQL =
+            "DELETE FROM expenses WHERE id = :id AND user_id = :userId" + EXPECTED_VERSION + " " +
+            "RETURNING expense_date, category, payment_method, cost";
+    
+    @Override
+    public List<ExpenseSummary.Group> summarize(Long userId, LocalDate startDate, LocalDate endDate,
+                                                List<SummaryDimension> groupBy) {
+        List<String> keys = new ArrayList<>();
+        for (SummaryDimension dimension : groupBy) {
+            switch (dimension) {
+                case CATEGORY -> keys.add("e.category");
+                case PAYMENT_METHOD -> keys.add("e.paymentMethod");
+                case MONTH -> {
+                    keys.add("year(e.expenseDate)");
+                    keys.add("month(e.expenseDate)");
+                }
+            }
+        }
+        String keyList = String.join(", ", keys);
+        String select = "SELECT " + (keys.isEmpty() ? "" : keyList + ", ") +
+                "SUM(e.cost), COUNT(e), MIN(e.cost), MAX(e.cost) " +
+                "FROM Expense e WHERE e.userId = :userId AND e.expenseDate BETWEEN :startDate AND :endDate";
+        String jpql = keys.isEmpty() ? select : select + " GROUP BY " + keyList + " ORDER BY " + keyList;
+        
+        List<Object[]> rows = entityManager.createQuery(jpql, Object[].class)
+                .setParameter("userId", userId)
+                .setParameter("startDate", startDate)
+                .setParameter("endDate", endDate)
+                .getResultList();
+        
+        List<ExpenseSummary.Group> groups = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            int column = 0;
+            String category = null;
+            String paymentMethod = null;
+            String month = null;
+            for (SummaryDimension dimension : groupBy) {
+                switch (dimension) {
+                    case CATEGORY -> category = (String) row[column++];
+                    case PAYMENT_METHOD -> paymentMethod = (String) row[column++];
+                    case MONTH -> {
+                        int year = ((Number) row[column++]).intValue();
+                        int monthOfYear = ((Number) row[column++]).intValue();
+                        month = String.format("%04d-%02d", year, monthOfYear);
+                    }
+                }
+            }
+            long count = ((Number) row[column + 1]).longValue();
+            // Without GROUP BY an empty range still yields one row of NULL aggregates
+            if (count == 0) {
+                continue;
+            }
+            groups.add(new ExpenseSummary.Group(category, paymentMethod, month,
+                    (BigDecimal) row[column], count, (BigDecimal) row[column + 2], (BigDecimal) row[column + 3]));
+        }
+        return groups;
+    }
+    
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<ExpenseSearchHit> search(Long userId, String query, ExpenseSearchCursor after, int limit) {
+        List<Object[]> rows = entityManager.createNativeQuery(SEARCH_SQL)
+                .unwrap(NativeQuery.class)
+                .addEntity("e", Expense.class)
+                .addScalar("score", StandardBasicTypes.FLOAT)
+                .setParameter("userId", userId)
+                .setParameter("query", query)
+                .setParameter("pattern", "%" + escapeLike(query) + "%")
+                .setParameter("afterScore", after.score())
+                .setParameter("afterId", after.id())
+                .setParameter("limit", limit)
+                .getResultList();
+        
+        List<ExpenseSearchHit> hits = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            hits.add(new ExpenseSearchHit((Expense) row[0], (Float) row[1]));
+        }
+        return hits;
+    }
+    
+    @Override
+    @SuppressWarnings("unchecked")
+    public Optional<Updated> update(Long id, Long userId, Long expectedVersion, Expense values, boolean patch) {
+        String sql = String.format(UPDATE_SQL, patch ? PATCH_VALUES : PUT_VALUES);
+        // Typed binds, so that a null is still sent with the column's type
+        List<Object[]> rows = entityManager.createNativeQuery(sql)
+                .unwrap(NativeQuery.class)
+                .addEntity("e", Expense.class)
+                .addScalar("old_expense_date", StandardBasicTypes.LOCAL_DATE)
+                .addScalar("old_category", StandardBasicTypes.STRING)
+                .addScalar("old_payment_method", StandardBasicTypes.STRING)
+                .addScalar("old_cost", StandardBasicTypes.BIG_DECIMAL)
+                .setParameter("id", id)
+                .setParameter("userId", userId)
+                .setParameter("expectedVersion", expectedVersion, StandardBasicTypes.LONG)
+                .setParameter("item", values.getItem(), StandardBasicTypes.STRING)
+                .setParameter("cost", values.getCost(), StandardBasicTypes.BIG_DECIMAL)
+                .setParameter("expenseDate", values.getExpenseDate(), StandardBasicTypes.LOCAL_DATE)
+                .setParameter("category", values.getCategory(), StandardBasicTypes.STRING)
+                .setParameter("description", values.getDescription(), StandardBasicTypes.STRING)
+                .setParameter("paymentMethod", values.getPaymentMethod(), StandardBasicTypes.STRING)
+                .setParameter("location", values.getLocation(), StandardBasicTypes.STRING)
+                .getResultList();
+        if (rows.isEmpty()) {
+            return Optional.empty();
+        }
+        Object[] row = rows.get(0);
+        return Optional.of(new Updated((Expense) row[0],
+                ExpenseMonthlyRollupId.of(userId, (LocalDate) row[1], (String) row[2], (String) row[3]),
+                (BigDecimal) row[4]));
+    }
+    
+    @Override
+    @SuppressWarnings("unchecked")
+    public Optional<Deleted> delete(Long id, Long userId, Long expectedVersion) {
+        List<Object[]> rows = entityManager.createNativeQuery(DELETE_SQL)
+                .unwrap(NativeQuery.class)
+                .addScalar("expense_date", StandardBasicTypes.LOCAL_DATE)
+                .addScalar("category", StandardBasicTypes.STRING)
+                .addScalar("payment_method", StandardBasicTypes.STRING)
+                .addScalar("cost", StandardBasicTypes.BIG_DECIMAL)
+                .setParameter("id", id)
+                .setParameter("userId", userId)
+                .setParameter("expectedVersion", expectedVersion, StandardBasicTypes.LONG)
+                .getResultList();
+        if (rows.isEmpty()) {
+            return Optional.empty();
+        }
+        Object[] row = rows.get(0);
+        return Optional.of(new Deleted(
+                ExpenseMonthlyRollupId.of(userId, (LocalDate) row[0], (String) row[1], (String) row[2]),
+                (BigDecimal) row[3]));
+    }
+    
+    // ILIKE treats % and _ as wildcards and \ as the escape character
+    static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.demo.repository;
+
+import com.example.demo.model.Expense;
+import com.example.demo.model.ExpenseFilter;
+import com.example.demo.model.ExpenseQueryCursor;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Predicate;
+import org.hibernate.query.criteria.HibernateCriteriaBuilder;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Building blocks for GET /api/expenses/query: every filter becomes a predicate of one SQL statement,
+// so the database intersects them through its indexes (V7, V8)
+public final class ExpenseSpecifications {
+    
+    private ExpenseSpecifications() {
+    }
+    
+    public static Specification<Expense> matching(Long userId, ExpenseFilter filter) {
+        return (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            predicates.add(cb.equal(root.get("userId"), userId));
+            if (filter.category() != null) {
+                predicates.add(cb.equal(root.get("category"), filter.category()));
+            }
+            if (filter.paymentMethod() != null) {
+                predicates.add(cb.equal(root.get("paymentMethod"), filter.paymentMethod()));
+            }
+            if (filter.minCost() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("cost"), filter.minCost()));
+            }
+            if (filter.maxCost() != null) {
+                predicates.add(cb.lessThanOrEqualTo(root.get("cost"), filter.maxCost()));
+            }
+            if (filter.startDate() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("expenseDate"), filter.startDate()));
+            }
+            if (filter.endDate() != null) {
+                predicates.add(cb.lessThanOrEqualTo(root.get("expenseDate"), filter.endDate()));
+            }
+            if (filter.text() != null && !filter.text().isBlank()) {
+                // Same expression as the trigram index (ExpenseRepositoryCustomImpl.SEARCH_TEXT), so ILIKE can use it;
+                // the separators must be literals, as bind parameters would no longer match the indexed expression
+                Expression<String> searchText = cb.concat(cb.concat(root.get("item"), cb.literal(" ")),
+                        cb.coalesce(root.get("description"), cb.literal("")));
+                predicates.add(((HibernateCriteriaBuilder) cb).ilike(searchText,
+                        "%" + ExpenseRepositoryCustomImpl.escapeLike(filter.text().trim()) + "%", '\\'));
+            }
+            return cb.and(predicates.toArray(Predicate[]::new));
+        };
+    }
+    
+    // Rows strictly after the cursor in (attribute, id) order, both in the cursor's direction
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static Specification<Expense> after(ExpenseQueryCursor cursor) {
+        return (root, query, cb) -> {
+            Expression attribute = root.get(cursor.sort().getAttribute());
+            Comparable value = cursor.value();
+            if (cursor.direction() == Sort.Direction.DESC) {
+                return cb.or(cb.lessThan(attribute, value),
+                        cb.and(cb.equal(attribute, value), cb.lessThan(root.get("id"), cursor.id())));
+            }
+            return cb.or(cb.greaterThan(attribute, value),
+                    cb.and(cb.equal(attribute, value), cb.greaterThan(root.get("id"), cursor.id())));
+        };
+    }
+}
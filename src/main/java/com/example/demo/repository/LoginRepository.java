@@ -2,11 +2,26 @@ package com.example.demo.repository;
 
 import com.example.demo.model.Login;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface LoginRepository extends JpaRepository<Login, Long> {
     Optional<Login> findByEmail(String email);
+
+    @Query("SELECT l.id FROM Login l ORDER BY l.id")
+    List<Long> findAllIds();
+
+    // Only replaces the hash it was computed from, so a password change in between is not overwritten
+    @Modifying
+    @Transactional
+    @Query("UPDATE Login l SET l.password = :newPassword WHERE l.id = :id AND l.password = :oldPassword")
+    int replacePassword(@Param("id") Long id, @Param("oldPassword") String oldPassword,
+                        @Param("newPassword") String newPassword);
 } 
\ No newline at end of file
@@ -0,0 +1,45 @@
+package com.example.demo.repository;
+
+import com.example.demo.model.UserDataVersion;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+@Repository
+public interface UserDataVersionRepository extends JpaRepository<UserDataVersion, Long> {
+    
+    // Not read-only, so with replicas configured it always reads the primary's current version
+    @Transactional
+    @Query("SELECT v FROM UserDataVersion v WHERE v.userId = :userId")
+    Optional<UserDataVersion> findOnPrimary(@Param("userId") Long userId);
+    
+    // Increments the user's version, creating the row on the first write, and records the change in the
+    // expense_events outbox (V11) under the new version, which it returns. One statement, so a write costs
+    // no extra round trip. Not @Modifying, as the RETURNING row is read like a query result, so the
+    // transaction is declared here to keep it off the read-only default.
+    @Transactional
+    @Query(value = "WITH bumped AS (" +
+                   "INSERT INTO user_data_versions (user_id, version, modified_at) VALUES (:userId, 1, CURRENT_TIMESTAMP) " +
+                   "ON CONFLICT (user_id) DO UPDATE " +
+                   "SET version = user_data_versions.version + 1, modified_at = CURRENT_TIMESTAMP " +
+                   "RETURNING version) " +
+                   "INSERT INTO expense_events (user_id, version, type, payload) " +
+                   "SELECT :userId, version, :type, CAST(:payload AS json) FROM bumped RETURNING version",
+           nativeQuery = true)
+    long bump(@Param("userId") Long userId, @Param("type") String type, @Param("payload") String payload);
+    
+    // Moves the user to a new version without an event, for changes that are not a write of theirs (such as
+    // repaired rollups): what was cached for the old version is abandoned, and change streams see the gap and reset
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO user_data_versions (user_id, version, modified_at) VALUES (:userId, 1, CURRENT_TIMESTAMP) " +
+                   "ON CONFLICT (user_id) DO UPDATE " +
+                   "SET version = user_data_versions.version + 1, modified_at = CURRENT_TIMESTAMP",
+           nativeQuery = true)
+    int touch(@Param("userId") Long userId);
+}
@@ -1,31 +1,121 @@
 package com.example.demo.service;
 
+import com.example.demo.model.AuthenticatedUser;
 import com.example.demo.model.Login;
 import com.example.demo.repository.LoginRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.time.Duration;
 import java.util.Collections;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 public class CustomUserDetailsService implements UserDetailsService {
 
     private final LoginRepository loginRepository;
+    // Only found accounts are cached; LoginService evicts entries whenever an account changes
+    private final Cache<String, CachedLogin> logins;
+    // Per-email stamp moved on by every eviction; a load only installs its row if the stamp it started
+    // with is still current. Stamps come from one sequence, so an evicted stamp returns higher than before.
+    private final AtomicLong stampSequence = new AtomicLong();
+    private final Cache<String, Long> stamps;
 
-    public CustomUserDetailsService(LoginRepository loginRepository) {
+    public CustomUserDetailsService(LoginRepository loginRepository,
+                                    @Value("${USER_DETAILS_CACHE_SIZE:10000}") long cacheSize,
+                                    @Value("${USER_DETAILS_CACHE_TTL_SECONDS:300}") long ttlSeconds) {
         this.loginRepository = loginRepository;
+        this.logins = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        this.stamps = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .build();
     }
 
     @Override
     public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
+        CachedLogin login = loadLogin(email);
+
+        // A new User per call: Spring Security may erase credentials on the instance it is handed
+        return new User(login.email(), login.password(), 
+                Collections.singletonList(new SimpleGrantedAuthority("USER")));
+    }
+
+    public AuthenticatedUser loadAuthenticatedUser(String email) throws UsernameNotFoundException {
+        CachedLogin login = loadLogin(email);
+
+        return new AuthenticatedUser(login.id(), login.email());
+    }
+
+    // Evicts now and again after the surrounding transaction commits, so a concurrent
+    // reader cannot re-cache the old row between the eviction and the commit
+    public void evict(String email) {
+        if (email == null) {
+            return;
+        }
+        invalidate(email);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidate(email);
+                }
+            });
+        }
+    }
+
+    // Stamp first: a load that has not installed yet then fails its check, and one that already has is
+    // removed by the invalidate, which waits for an install in progress on the same key
+    private void invalidate(String email) {
+        stamps.put(email, stampSequence.incrementAndGet());
+        logins.invalidate(email);
+    }
+
+    private long stamp(String email) {
+        return stamps.get(email, key -> stampSequence.incrementAndGet());
+    }
+
+    public CacheStats getCacheStats() {
+        return logins.stats();
+    }
+
+    public long getCacheSize() {
+        return logins.estimatedSize();
+    }
+
+    private CachedLogin loadLogin(String email) {
+        CachedLogin cached = logins.getIfPresent(email);
+        if (cached != null) {
+            return cached;
+        }
+        long stamp = stamp(email);
         Login login = loginRepository.findByEmail(email)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found with email: " + email));
+        CachedLogin loaded = new CachedLogin(login.getId(), login.getEmail(), login.getPassword());
+        // An eviction since the stamp was taken means the row may predate a committed change: it is
+        // returned to this caller but not cached, and the next caller reads again
+        CachedLogin installed = logins.asMap().compute(email, (key, current) -> {
+            if (current != null) {
+                return current;
+            }
+            return stamp(email) == stamp ? loaded : null;
+        });
+        return installed != null ? installed : loaded;
+    }
 
-        return new User(login.getEmail(), login.getPassword(), 
-                Collections.singletonList(new SimpleGrantedAuthority("USER")));
+    private record CachedLogin(Long id, String email, String password) {
     }
-} 
\ No newline at end of file
+}
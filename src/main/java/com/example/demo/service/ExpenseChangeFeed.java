@@ -0,0 +1,382 @@
+package com.example.demo.service;
+
+import com.example.demo.model.ExpenseEventType;
+import com.example.demo.repository.UserDataVersionRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Pushes committed expense changes to subscribers of GET /api/expenses/stream.
+// ExpenseService records every write in the expense_events outbox (V11) inside the writing transaction,
+// so only committed changes exist to be sent. After the commit this instance delivers the user's new
+// events at once; writes committed on other instances are noticed by polling user_data_versions for the
+// subscribed users every EVENT_POLL_MS. Event ids are the user's data versions: a reconnecting client
+// sends the last one it saw as Last-Event-ID and gets everything after it, or a "reset" event when those
+// events have already been deleted, after which it should reload.
+// An open stream is an async request that holds no thread; events are written from a small pool, with
+// at most one task per subscriber queued or running, so a client that reads slowly ties up one thread at
+// most and never holds back the others. One whose write has not returned after EVENT_WRITE_TIMEOUT_MS is
+// dropped; the write itself ends at the latest with the connector's socket timeout.
+@Component
+public class ExpenseChangeFeed {
+
+    private static final Logger log = LoggerFactory.getLogger(ExpenseChangeFeed.class);
+
+    public static final String RESET_EVENT = "reset";
+    private static final int BATCH_SIZE = 100;
+    private static final long RECONNECT_MILLIS = 3000;
+    private static final String EVENTS_SQL = "SELECT version, type, payload FROM expense_events " +
+            "WHERE user_id = ? AND version > ? ORDER BY version LIMIT " + BATCH_SIZE;
+    private static final String VERSION_SQL = "SELECT coalesce(max(version), 0) FROM user_data_versions WHERE user_id = ?";
+    private static final String VERSIONS_SQL = "SELECT user_id, version FROM user_data_versions WHERE user_id = ANY(?::bigint[])";
+
+    private final UserDataVersionRepository dataVersionRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final ThreadPoolExecutor executor;
+    private final long timeoutMillis;
+    private final long writeTimeoutMillis;
+    private final int retentionHours;
+    private final Map<Long, Feed> feeds = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+
+    public ExpenseChangeFeed(UserDataVersionRepository dataVersionRepository, DataSource dataSource,
+                             ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                             @Value("${EVENT_DELIVERY_THREADS:4}") int threads,
+                             @Value("${EVENT_STREAM_TIMEOUT_MS:1800000}") long timeoutMillis,
+                             @Value("${EVENT_WRITE_TIMEOUT_MS:10000}") long writeTimeoutMillis,
+                             @Value("${EVENT_RETENTION_HOURS:24}") int retentionHours) {
+        this.dataVersionRepository = dataVersionRepository;
+        // Outside a transaction, so always the primary: events are read right after they commit
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.objectMapper = objectMapper;
+        this.timeoutMillis = timeoutMillis;
+        this.writeTimeoutMillis = writeTimeoutMillis;
+        this.retentionHours = retentionHours;
+        AtomicInteger threadNumber = new AtomicInteger();
+        // Unbounded queue: a subscriber has at most one task queued at a time, see Subscriber.scheduled
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "expense-events-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        Gauge.builder("expense.stream.subscribers", subscriberCount, AtomicInteger::get).register(meterRegistry);
+        Gauge.builder("expense.stream.queue", executor, pool -> pool.getQueue().size()).register(meterRegistry);
+    }
+
+    // Must run in the writing transaction: bumps the user's data version and stores the event under it.
+    // payload is serialized as the event's data (see ExpenseEventType). Returns the new version.
+    public long record(Long userId, ExpenseEventType type, Object payload) {
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize " + type.getEventName() + " event", e);
+        }
+        long version = dataVersionRepository.bump(userId, type.getEventName(), json);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            deliverSoon(feeds.get(userId));
+            return version;
+        }
+        // afterCompletion runs after every synchronization's afterCommit, so by the time a client hears of
+        // the change the writer's other after-commit work (read-your-writes, column store) is done
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    deliverSoon(feeds.get(userId));
+                }
+            }
+        });
+        return version;
+    }
+
+    // lastEventId is the Last-Event-ID header: null starts with the next change, otherwise everything
+    // after that version is replayed first. An id that cannot be ours leads straight to a reset.
+    public SseEmitter subscribe(Long userId, String lastEventId) {
+        long current = jdbcTemplate.queryForObject(VERSION_SQL, Long.class, userId);
+        long lastSent = lastEventId == null ? current : parseEventId(lastEventId, current);
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Subscriber subscriber = new Subscriber(userId, emitter, lastSent);
+        Feed feed = feeds.compute(userId, (id, existing) -> {
+            Feed userFeed = existing != null ? existing : new Feed();
+            userFeed.subscribers.add(subscriber);
+            return userFeed;
+        });
+        subscriberCount.incrementAndGet();
+        emitter.onCompletion(() -> unsubscribe(userId, subscriber));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(error -> unsubscribe(userId, subscriber));
+        try {
+            // Opens the stream for the client and sets how soon it reconnects after the connection drops
+            emitter.send(SseEmitter.event().reconnectTime(RECONNECT_MILLIS).comment("subscribed"));
+        } catch (IOException e) {
+            emitter.complete();
+            return emitter;
+        }
+        feed.raiseKnownVersion(current);
+        if (lastSent != current) {
+            deliverSoon(subscriber);
+        }
+        return emitter;
+    }
+
+    public int getSubscriberCount() {
+        return subscriberCount.get();
+    }
+
+    // Catches writes committed by other instances; one query for all subscribed users
+    @Scheduled(fixedDelayString = "${EVENT_POLL_MS:5000}")
+    public void poll() {
+        if (feeds.isEmpty()) {
+            return;
+        }
+        Long[] userIds = feeds.keySet().toArray(Long[]::new);
+        jdbcTemplate.query(VERSIONS_SQL, rs -> {
+            Feed feed = feeds.get(rs.getLong(1));
+            if (feed == null) {
+                return;
+            }
+            long version = rs.getLong(2);
+            feed.raiseKnownVersion(version);
+            for (Subscriber subscriber : feed.subscribers) {
+                if (subscriber.lastSent < version) {
+                    deliverSoon(subscriber);
+                }
+            }
+        }, (Object) userIds);
+    }
+
+    // A comment line now and then keeps idle streams from being closed by proxies and load balancers,
+    // and finds clients that went away without closing the connection. A subscriber still stuck in a write
+    // gets no heartbeat but is dropped once the write has taken longer than EVENT_WRITE_TIMEOUT_MS.
+    @Scheduled(fixedDelayString = "${EVENT_HEARTBEAT_MS:20000}")
+    public void heartbeat() {
+        long now = System.currentTimeMillis();
+        feeds.values().forEach(feed -> {
+            for (Subscriber subscriber : feed.subscribers) {
+                long writingSince = subscriber.writingSince;
+                if (writingSince != 0 && now - writingSince > writeTimeoutMillis) {
+                    log.info("Dropping expense event subscriber of user {}: write pending for {} ms",
+                            subscriber.userId, now - writingSince);
+                    unsubscribe(subscriber.userId, subscriber);
+                } else {
+                    subscriber.heartbeatDue.set(true);
+                    schedule(subscriber);
+                }
+            }
+        });
+    }
+
+    @Scheduled(cron = "${EVENT_CLEANUP_CRON:0 45 3 * * *}")
+    public void deleteExpiredEvents() {
+        int deleted = jdbcTemplate.update("DELETE FROM expense_events " +
+                "WHERE created_at < CURRENT_TIMESTAMP - make_interval(hours => ?)", retentionHours);
+        log.info("Deleted {} expense events older than {} hours", deleted, retentionHours);
+    }
+
+    // Published before the web server's graceful shutdown, which would otherwise wait for the open streams
+    // to end; clients reconnect, with their Last-Event-ID, to another instance
+    @EventListener(ContextClosedEvent.class)
+    public void closeStreams() {
+        feeds.values().forEach(feed -> feed.subscribers.forEach(subscriber -> subscriber.emitter.complete()));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void unsubscribe(Long userId, Subscriber subscriber) {
+        subscriber.closed = true;
+        feeds.computeIfPresent(userId, (id, feed) -> {
+            if (feed.subscribers.remove(subscriber)) {
+                subscriberCount.decrementAndGet();
+            }
+            return feed.subscribers.isEmpty() ? null : feed;
+        });
+    }
+
+    private void deliverSoon(Feed feed) {
+        if (feed != null) {
+            feed.subscribers.forEach(this::deliverSoon);
+        }
+    }
+
+    private void deliverSoon(Subscriber subscriber) {
+        subscriber.eventsDue.set(true);
+        schedule(subscriber);
+    }
+
+    private void schedule(Subscriber subscriber) {
+        if (subscriber.scheduled.compareAndSet(false, true)) {
+            executor.execute(() -> drain(subscriber));
+        }
+    }
+
+    // Runs whatever was asked for the subscriber since it was scheduled; a request that comes in while it
+    // runs is picked up by the loop or, after scheduled is cleared, by a new task
+    private void drain(Subscriber subscriber) {
+        try {
+            while (subscriber.eventsDue.getAndSet(false)) {
+                deliver(subscriber);
+            }
+            if (subscriber.heartbeatDue.getAndSet(false) && !subscriber.closed) {
+                send(subscriber, SseEmitter.event().comment(""));
+            }
+        } finally {
+            subscriber.scheduled.set(false);
+        }
+        if (subscriber.eventsDue.get() || subscriber.heartbeatDue.get()) {
+            schedule(subscriber);
+        }
+    }
+
+    private void deliver(Subscriber subscriber) {
+        Feed feed = feeds.get(subscriber.userId);
+        if (subscriber.closed || feed == null) {
+            return;
+        }
+        // Read before the outbox: every version up to it has committed, so its event is either found or deleted
+        long known = feed.knownVersion.get();
+        try {
+            List<Event> events;
+            do {
+                events = jdbcTemplate.query(EVENTS_SQL, (rs, rowNum) ->
+                        new Event(rs.getLong(1), rs.getString(2), rs.getString(3)), subscriber.userId, subscriber.lastSent);
+                if (!send(subscriber, events)) {
+                    return;
+                }
+            } while (events.size() == BATCH_SIZE);
+        } catch (RuntimeException e) {
+            // The next write or poll tries again from where the subscriber stopped
+            log.warn("Could not deliver expense events to user {}: {}", subscriber.userId, e.getMessage());
+            return;
+        }
+        // The user's version is past what the outbox still holds: those events were deleted
+        if (subscriber.lastSent < known) {
+            reset(subscriber, known);
+        }
+    }
+
+    // False once a write failed
+    private boolean send(Subscriber subscriber, List<Event> events) {
+        for (Event event : events) {
+            if (event.version() <= subscriber.lastSent) {
+                continue;
+            }
+            // Versions have no gaps, so a jump means the events in between were deleted
+            if (event.version() != subscriber.lastSent + 1) {
+                return reset(subscriber, events.get(events.size() - 1).version());
+            }
+            if (!send(subscriber, SseEmitter.event().id(Long.toString(event.version())).name(event.type()).data(event.payload()))) {
+                return false;
+            }
+            subscriber.lastSent = event.version();
+        }
+        return true;
+    }
+
+    // Tells the client to reload; its next Last-Event-ID is the version it reloads at
+    private boolean reset(Subscriber subscriber, long version) {
+        if (!send(subscriber, SseEmitter.event().id(Long.toString(version)).name(RESET_EVENT).data("{}"))) {
+            return false;
+        }
+        subscriber.lastSent = version;
+        return true;
+    }
+
+    // A failed write means the client is gone (or the stream already ended). The emitter cannot be completed
+    // while a write is blocked on it, so one dropped by the heartbeat is completed here once the write returns.
+    private boolean send(Subscriber subscriber, SseEmitter.SseEventBuilder event) {
+        subscriber.writingSince = System.currentTimeMillis();
+        try {
+            subscriber.emitter.send(event);
+        } catch (IOException | IllegalStateException e) {
+            unsubscribe(subscriber.userId, subscriber);
+            subscriber.emitter.complete();
+            return false;
+        } finally {
+            subscriber.writingSince = 0;
+        }
+        if (subscriber.closed) {
+            subscriber.emitter.complete();
+            return false;
+        }
+        return true;
+    }
+
+    // Non-numeric, or newer than the user's data, e.g. from before a database restore
+    private static long parseEventId(String lastEventId, long current) {
+        try {
+            long version = Long.parseLong(lastEventId.trim());
+            return version >= 0 && version <= current ? version : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private record Event(long version, String type, String payload) {
+    }
+
+    private static final class Subscriber {
+
+        private final Long userId;
+        private final SseEmitter emitter;
+        // Version of the last event sent; only changed by the subscriber's one task
+        private volatile long lastSent;
+        // Set while a task for the subscriber is queued or running
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final AtomicBoolean eventsDue = new AtomicBoolean();
+        private final AtomicBoolean heartbeatDue = new AtomicBoolean();
+        // When the write in progress started, 0 when none is
+        private volatile long writingSince;
+        // Unsubscribed; nothing more is sent
+        private volatile boolean closed;
+
+        private Subscriber(Long userId, SseEmitter emitter, long lastSent) {
+            this.userId = userId;
+            this.emitter = emitter;
+            this.lastSent = lastSent;
+        }
+    }
+
+    // The subscribers of one user
+    private static final class Feed {
+
+        private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+        // Highest data version seen by subscribe or poll
+        private final AtomicLong knownVersion = new AtomicLong();
+
+        private void raiseKnownVersion(long version) {
+            knownVersion.accumulateAndGet(version, Math::max);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.demo.service;
+
+import com.example.demo.config.ReplicaDataSource;
+import com.example.demo.util.ExpenseColumns;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+// Optional in-memory copy of the expenses of recently queried users (COLUMN_STORE_ENABLED), serving
+// ExpenseService's totals, category totals and category / payment method lists without a query.
+// A user's columns are loaded on first use and kept in step by applying each committed write, and
+// users are evicted once all loaded columns would exceed COLUMN_STORE_MAX_BYTES.
+// Every instance keeps its own copy and only sees its own writes, so the columns carry the user's data
+// version (user_data_versions) they reflect, and a read compares it with the current one: columns that
+// missed a write made through another instance (or anything else that moved the version on, such as a
+// detached partition) are loaded again. Without that check the store would only be right with a single
+// instance.
+@Component
+public class ExpenseColumnStore {
+
+    private static final String LOAD_SQL = "SELECT id, expense_date, cost, category, payment_method, version " +
+            "FROM expenses WHERE user_id = ? ORDER BY expense_date, id";
+    private static final String VERSION_SQL = "SELECT coalesce(max(version), 0) FROM user_data_versions WHERE user_id = ?";
+
+    private final boolean enabled;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate loadTransaction;
+    private final UserCacheGenerations cacheGenerations;
+    private final Cache<Long, Loaded> columns;
+
+    public ExpenseColumnStore(DataSource dataSource, PlatformTransactionManager transactionManager,
+                              UserCacheGenerations cacheGenerations, MeterRegistry meterRegistry,
+                              ObjectProvider<ReplicaDataSource> replicas,
+                              @Value("${COLUMN_STORE_ENABLED:false}") boolean enabled,
+                              @Value("${COLUMN_STORE_MAX_BYTES:67108864}") long maxBytes) {
+        this.enabled = enabled;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(1000);
+        this.loadTransaction = new TransactionTemplate(transactionManager);
+        // Writes are applied on top of a load, so it must not come from a replica that is behind; with replicas
+        // the load gets its own read-write (primary) transaction, the caller's read-only one not having a connection yet
+        if (replicas.getIfAvailable() != null) {
+            this.loadTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        } else {
+            this.loadTransaction.setReadOnly(true);
+        }
+        this.cacheGenerations = cacheGenerations;
+        this.columns = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((Long userId, Loaded loaded) -> (int) Math.min(loaded.columns().estimatedBytes(), Integer.MAX_VALUE))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, columns, "expense.columns");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public BigDecimal total(Long userId) {
+        return BigDecimal.valueOf(columnsOf(userId).totalCents(), 2);
+    }
+
+    // Both bounds inclusive
+    public BigDecimal total(Long userId, LocalDate startDate, LocalDate endDate) {
+        return BigDecimal.valueOf(columnsOf(userId).totalCents((int) startDate.toEpochDay(), (int) endDate.toEpochDay()), 2);
+    }
+
+    public BigDecimal totalForCategory(Long userId, String category) {
+        return BigDecimal.valueOf(columnsOf(userId).categoryTotalCents(category), 2);
+    }
+
+    public List<String> categories(Long userId) {
+        return columnsOf(userId).categories();
+    }
+
+    public List<String> paymentMethods(Long userId) {
+        return columnsOf(userId).paymentMethods();
+    }
+
+    // version is the user's data version after the write (ExpenseChangeFeed.record)
+    public void savedAfterCommit(Long userId, long version, List<ExpenseColumns.Row> rows) {
+        afterCommit(userId, version, current -> {
+            for (ExpenseColumns.Row row : rows) {
+                current = current.with(row);
+            }
+            return current;
+        });
+    }
+
+    public void deletedAfterCommit(Long userId, long version, long expenseId) {
+        afterCommit(userId, version, current -> current.without(expenseId));
+    }
+
+    // Frees the memory of columns that changes made outside ExpenseService (such as detaching a
+    // partition) have made stale; their users' versions moved on, so they would be reloaded anyway
+    public void invalidateAll() {
+        columns.invalidateAll();
+    }
+
+    private void afterCommit(Long userId, long version, UnaryOperator<ExpenseColumns> change) {
+        if (!enabled) {
+            return;
+        }
+        // Only loaded users are updated; anyone else is read in full on first use. A change is applied to
+        // columns at the version just before it; columns loaded at or after it already have it, and older
+        // ones missed a write in between, as do columns that have collected too many delete tombstones:
+        // those are dropped, and the next read loads them again
+        Runnable apply = () -> columns.asMap().computeIfPresent(userId, (id, current) -> {
+            if (current.version() >= version) {
+                return current;
+            }
+            if (current.version() != version - 1) {
+                return null;
+            }
+            ExpenseColumns changed = change.apply(current.columns());
+            return changed.needsReload() ? null : new Loaded(changed, version);
+        });
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            apply.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                apply.run();
+            }
+        });
+    }
+
+    // Columns at or past the user's current version are served as they are; a concurrent load may have
+    // installed newer ones than the version this request read, which is still no older than what it asked for
+    private ExpenseColumns columnsOf(Long userId) {
+        long version = cacheGenerations.current(userId);
+        Loaded present = columns.getIfPresent(userId);
+        if (present != null && present.version() >= version) {
+            return present.columns();
+        }
+        Loaded loaded = loadTransaction.execute(status -> load(userId));
+        return columns.asMap().merge(userId, loaded,
+                (current, fresh) -> current.version() >= fresh.version() ? current : fresh).columns();
+    }
+
+    // The version is read first: rows written after it may be in the load too, which makes it at worst
+    // look older than it is, and a change applied on top of rows that already have it changes nothing
+    private Loaded load(Long userId) {
+        long version = jdbcTemplate.queryForObject(VERSION_SQL, Long.class, userId);
+        ExpenseColumns.Builder builder = new ExpenseColumns.Builder();
+        jdbcTemplate.query(LOAD_SQL, rs -> {
+            builder.add(new ExpenseColumns.Row(rs.getLong(1), (int) rs.getObject(2, LocalDate.class).toEpochDay(),
+                    rs.getBigDecimal(3).movePointRight(2).longValueExact(), rs.getString(4), rs.getString(5), rs.getLong(6)));
+        }, userId);
+        return new Loaded(builder.build(), version);
+    }
+
+    // A user's columns and the data version they reflect
+    private record Loaded(ExpenseColumns columns, long version) {
+    }
+}
@@ -0,0 +1,203 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Expense;
+import com.example.demo.model.ExpenseImportResult;
+import com.example.demo.util.CsvReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Imports expenses from CSV in fixed-size chunks. Each chunk is committed in its own
+// transaction through ExpenseService.createExpenses, so a failing chunk leaves the
+// chunks before it in place. Memory is bounded by the chunk size and the error cap.
+@Service
+public class ExpenseImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(ExpenseImportService.class);
+
+    public static final int CHUNK_SIZE = 1000;
+    public static final int MAX_REPORTED_ERRORS = 1000;
+    private static final int MAX_RECORD_LENGTH = 64 * 1024;
+
+    // Normalized header name (lowercase, no spaces or underscores) -> column
+    private static final Map<String, Column> HEADER_ALIASES = Map.of(
+            "item", Column.ITEM,
+            "cost", Column.COST,
+            "amount", Column.COST,
+            "expensedate", Column.EXPENSE_DATE,
+            "date", Column.EXPENSE_DATE,
+            "category", Column.CATEGORY,
+            "description", Column.DESCRIPTION,
+            "paymentmethod", Column.PAYMENT_METHOD,
+            "location", Column.LOCATION);
+
+    private enum Column { ITEM, COST, EXPENSE_DATE, CATEGORY, DESCRIPTION, PAYMENT_METHOD, LOCATION }
+
+    private final ExpenseService expenseService;
+
+    public ExpenseImportService(ExpenseService expenseService) {
+        this.expenseService = expenseService;
+    }
+
+    // Not transactional on purpose: each chunk gets its own transaction from ExpenseService
+    public ExpenseImportResult importCsv(Long userId, InputStream in, DateTimeFormatter dateFormat) throws IOException {
+        CsvReader csv = new CsvReader(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)), MAX_RECORD_LENGTH);
+        Progress progress = new Progress();
+
+        List<String> header = csv.readRecord();
+        if (header == null) {
+            progress.error(1, "file is empty");
+            return progress.result();
+        }
+        Map<Column, Integer> columns = mapHeader(header);
+        for (Column required : List.of(Column.ITEM, Column.COST, Column.EXPENSE_DATE)) {
+            if (!columns.containsKey(required)) {
+                progress.error(1, "missing required column " + required.name().toLowerCase(Locale.ROOT));
+                return progress.result();
+            }
+        }
+
+        List<Expense> chunk = new ArrayList<>(CHUNK_SIZE);
+        long chunkFirstLine = 0;
+        try {
+            List<String> record;
+            while ((record = csv.readRecord()) != null) {
+                progress.rowsRead++;
+                long line = csv.getRecordLine();
+                Expense expense;
+                try {
+                    expense = toExpense(record, columns, dateFormat);
+                } catch (RuntimeException e) {
+                    progress.reject(line, e.getMessage());
+                    continue;
+                }
+                String error = ExpenseService.validate(expense);
+                if (error != null) {
+                    progress.reject(line, error);
+                    continue;
+                }
+                if (chunk.isEmpty()) {
+                    chunkFirstLine = line;
+                }
+                chunk.add(expense);
+                if (chunk.size() == CHUNK_SIZE) {
+                    commitChunk(userId, chunk, chunkFirstLine, line, progress);
+                }
+            }
+        } catch (IOException e) {
+            // Malformed CSV cannot be resynchronized; keep what was committed and report where it stopped
+            progress.error(csv.getRecordLine(), e.getMessage());
+        }
+        commitChunk(userId, chunk, chunkFirstLine, csv.getRecordLine(), progress);
+        return progress.result();
+    }
+
+    private void commitChunk(Long userId, List<Expense> chunk, long firstLine, long lastLine, Progress progress) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        try {
+            progress.rowsImported += expenseService.createExpenses(userId, chunk).created();
+            progress.chunksCommitted++;
+        } catch (RuntimeException e) {
+            progress.chunksFailed++;
+            progress.rowsRejected += chunk.size();
+            progress.error(firstLine, "lines " + firstLine + "-" + lastLine + " not imported: " + e.getMessage());
+        }
+        chunk.clear();
+        if ((progress.chunksCommitted + progress.chunksFailed) % 100 == 0) {
+            log.info("CSV import for user {}: {} rows read, {} imported, {} rejected",
+                    userId, progress.rowsRead, progress.rowsImported, progress.rowsRejected);
+        }
+    }
+
+    private static Map<Column, Integer> mapHeader(List<String> header) {
+        Map<Column, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            String name = header.get(i).trim().toLowerCase(Locale.ROOT).replace("_", "").replace(" ", "");
+            Column column = HEADER_ALIASES.get(name);
+            if (column != null) {
+                columns.putIfAbsent(column, i);
+            }
+        }
+        return columns;
+    }
+
+    private static Expense toExpense(List<String> record, Map<Column, Integer> columns, DateTimeFormatter dateFormat) {
+        Expense expense = new Expense();
+        expense.setItem(value(record, columns, Column.ITEM));
+        String cost = value(record, columns, Column.COST);
+        if (cost != null) {
+            try {
+                expense.setCost(new BigDecimal(cost));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("invalid cost '" + cost + "'");
+            }
+        }
+        String date = value(record, columns, Column.EXPENSE_DATE);
+        if (date != null) {
+            try {
+                expense.setExpenseDate(LocalDate.parse(date, dateFormat));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("invalid date '" + date + "'");
+            }
+        }
+        expense.setCategory(value(record, columns, Column.CATEGORY));
+        expense.setDescription(value(record, columns, Column.DESCRIPTION));
+        expense.setPaymentMethod(value(record, columns, Column.PAYMENT_METHOD));
+        expense.setLocation(value(record, columns, Column.LOCATION));
+        return expense;
+    }
+
+    // Empty cells and columns missing from the header or the record are null
+    private static String value(List<String> record, Map<Column, Integer> columns, Column column) {
+        Integer index = columns.get(column);
+        if (index == null || index >= record.size()) {
+            return null;
+        }
+        String value = record.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private static class Progress {
+        private long rowsRead;
+        private long rowsImported;
+        private long rowsRejected;
+        private int chunksCommitted;
+        private int chunksFailed;
+        private final List<ExpenseImportResult.LineError> errors = new ArrayList<>();
+        private boolean errorsTruncated;
+
+        void reject(long line, String message) {
+            rowsRejected++;
+            error(line, message);
+        }
+
+        void error(long line, String message) {
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new ExpenseImportResult.LineError(line, message));
+            } else {
+                errorsTruncated = true;
+            }
+        }
+
+        ExpenseImportResult result() {
+            return new ExpenseImportResult(rowsRead, rowsImported, rowsRejected,
+                    chunksCommitted, chunksFailed, errors, errorsTruncated);
+        }
+    }
+}
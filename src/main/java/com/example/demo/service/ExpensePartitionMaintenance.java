@@ -0,0 +1,168 @@
+package com.example.demo.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Keeps the yearly partitions of expenses (see V10) in shape: splits the next PARTITION_PRECREATE_YEARS
+// years out of expenses_future ahead of time and, when PARTITION_RETENTION_YEARS is set, detaches years
+// older than that. Detached partitions stay in the database as plain tables (expenses_yYYYY) to be
+// archived and dropped by the operator. Moving a catch-all's bounds detaches and re-attaches it, which
+// locks expenses for the rest of the transaction, so the work runs at night and only when a year is due.
+@Component
+public class ExpensePartitionMaintenance {
+
+    private static final Logger log = LoggerFactory.getLogger(ExpensePartitionMaintenance.class);
+
+    private static final Pattern YEARLY_PARTITION = Pattern.compile("expenses_y(\\d{4})");
+    private static final String PAST = "expenses_past";
+    private static final String FUTURE = "expenses_future";
+    // Serialises maintenance across application instances sharing the database
+    private static final long LOCK_KEY = 0x6578_7061_7274L;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ExpenseColumnStore columnStore;
+    private final ReadYourWritesWindow readYourWrites;
+    private final int precreateYears;
+    private final int retentionYears;
+
+    public ExpensePartitionMaintenance(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                       ExpenseColumnStore columnStore,
+                                       ReadYourWritesWindow readYourWrites,
+                                       @Value("${PARTITION_PRECREATE_YEARS:1}") int precreateYears,
+                                       @Value("${PARTITION_RETENTION_YEARS:0}") int retentionYears) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.columnStore = columnStore;
+        this.readYourWrites = readYourWrites;
+        this.precreateYears = precreateYears;
+        this.retentionYears = retentionYears;
+    }
+
+    // Runs once at startup so a new year never starts without its partition, then daily
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${PARTITION_MAINTENANCE_CRON:0 15 3 * * *}")
+    public void maintain() {
+        int currentYear = LocalDate.now().getYear();
+        List<Integer> years = attachedYears();
+        for (int year = years.get(years.size() - 1) + 1; year <= currentYear + precreateYears; year++) {
+            createYear(year);
+        }
+        if (retentionYears > 0) {
+            for (int year : years) {
+                if (year < currentYear - retentionYears) {
+                    detachOldestYear(year);
+                }
+            }
+        }
+    }
+
+    // Years that currently have an attached partition, oldest first
+    public List<Integer> attachedYears() {
+        return jdbcTemplate.queryForList(
+                        "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+                        "WHERE i.inhparent = 'expenses'::regclass", String.class).stream()
+                .map(YEARLY_PARTITION::matcher)
+                .filter(Matcher::matches)
+                .map(matcher -> Integer.parseInt(matcher.group(1)))
+                .sorted()
+                .toList();
+    }
+
+    // Splits the year off expenses_future (the year after the last partition) or expenses_past (the year
+    // before the first), moving its rows along, so the yearly partitions stay contiguous
+    public boolean createYear(int year) {
+        Boolean created = transactionTemplate.execute(status -> {
+            lock();
+            List<Integer> years = attachedYears();
+            if (years.contains(year)) {
+                return false;
+            }
+            int first = years.get(0);
+            int last = years.get(years.size() - 1);
+            String partition = partitionName(year);
+            String yearBounds = "FROM ('" + LocalDate.of(year, 1, 1) + "') TO ('" + LocalDate.of(year + 1, 1, 1) + "')";
+            String catchAll;
+            String catchAllBounds;
+            if (year == last + 1) {
+                catchAll = FUTURE;
+                catchAllBounds = "FROM ('" + LocalDate.of(year + 1, 1, 1) + "') TO (MAXVALUE)";
+            } else if (year == first - 1) {
+                catchAll = PAST;
+                catchAllBounds = "FROM (MINVALUE) TO ('" + LocalDate.of(year, 1, 1) + "')";
+            } else {
+                throw new IllegalArgumentException("Partition for " + year + " would not be adjacent to " + first + "-" + last);
+            }
+            jdbcTemplate.execute("ALTER TABLE expenses DETACH PARTITION " + catchAll);
+            jdbcTemplate.execute("CREATE TABLE " + partition + " (LIKE expenses INCLUDING DEFAULTS INCLUDING CONSTRAINTS)");
+            int moved = jdbcTemplate.update("WITH moved AS (DELETE FROM " + catchAll + " " +
+                    "WHERE expense_date >= ? AND expense_date < ? RETURNING *) " +
+                    "INSERT INTO " + partition + " SELECT * FROM moved", LocalDate.of(year, 1, 1), LocalDate.of(year + 1, 1, 1));
+            jdbcTemplate.execute("ALTER TABLE expenses ATTACH PARTITION " + partition + " FOR VALUES " + yearBounds);
+            jdbcTemplate.execute("ALTER TABLE expenses ATTACH PARTITION " + catchAll + " FOR VALUES " + catchAllBounds);
+            log.info("Created expense partition {} ({} rows moved from {})", partition, moved, catchAll);
+            return true;
+        });
+        return Boolean.TRUE.equals(created);
+    }
+
+    // Only the oldest year can go, and expenses_past takes over its range so the partitions stay contiguous.
+    // The detached rows no longer count towards any total, so their monthly rollups go with them.
+    // Every user who had rows there gets a new data version, so ETags stop matching and change streams
+    // see a gap and reset (there is no event for this), and their cached analytics are abandoned as after
+    // a write of their own. In-memory columns are dropped and reloaded without the rows.
+    public boolean detachOldestYear(int year) {
+        Boolean detached = transactionTemplate.execute(status -> {
+            lock();
+            List<Integer> years = attachedYears();
+            // The current year and the ones after it are never detached
+            if (years.get(0) != year || year >= LocalDate.now().getYear()) {
+                return false;
+            }
+            String partition = partitionName(year);
+            jdbcTemplate.execute("ALTER TABLE expenses DETACH PARTITION " + PAST);
+            jdbcTemplate.execute("ALTER TABLE expenses DETACH PARTITION " + partition);
+            jdbcTemplate.execute("ALTER TABLE expenses ATTACH PARTITION " + PAST +
+                    " FOR VALUES FROM (MINVALUE) TO ('" + LocalDate.of(year + 1, 1, 1) + "')");
+            jdbcTemplate.update("DELETE FROM expense_monthly_rollups WHERE year_month >= ? AND year_month < ?",
+                    LocalDate.of(year, 1, 1), LocalDate.of(year + 1, 1, 1));
+            List<Long> userIds = jdbcTemplate.queryForList(
+                    "INSERT INTO user_data_versions (user_id, version, modified_at) " +
+                    "SELECT DISTINCT user_id, 1, CURRENT_TIMESTAMP FROM " + partition + " " +
+                    "ON CONFLICT (user_id) DO UPDATE " +
+                    "SET version = user_data_versions.version + 1, modified_at = CURRENT_TIMESTAMP " +
+                    "RETURNING user_id", Long.class);
+            for (Long userId : userIds) {
+                readYourWrites.recordAfterCommit(userId);
+            }
+            log.info("Detached expense partition {} ({} users affected)", partition, userIds.size());
+            return true;
+        });
+        if (Boolean.TRUE.equals(detached)) {
+            columnStore.invalidateAll();
+            return true;
+        }
+        return false;
+    }
+
+    private void lock() {
+        jdbcTemplate.execute("SELECT pg_advisory_xact_lock(" + LOCK_KEY + ")");
+    }
+
+    private static String partitionName(int year) {
+        return "expenses_y" + year;
+    }
+}
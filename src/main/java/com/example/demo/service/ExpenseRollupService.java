@@ -0,0 +1,166 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Expense;
+import com.example.demo.model.ExpenseMonthlyRollupId;
+import com.example.demo.repository.ExpenseMonthlyRollupRepository;
+import com.example.demo.repository.LoginRepository;
+import com.example.demo.repository.UserDataVersionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Maintains expense_monthly_rollups. The apply* methods join the caller's transaction,
+// so a rollup change commits or rolls back together with the expense write that caused it.
+@Service
+public class ExpenseRollupService {
+
+    private static final Logger log = LoggerFactory.getLogger(ExpenseRollupService.class);
+
+    private final ExpenseMonthlyRollupRepository rollupRepository;
+    private final LoginRepository loginRepository;
+    private final UserDataVersionRepository dataVersionRepository;
+    // Rebuilds are called from within this class, where @Transactional would not apply
+    private final TransactionTemplate transactionTemplate;
+    private final boolean rebuildOnStartup;
+    private final boolean autoRepair;
+
+    public ExpenseRollupService(ExpenseMonthlyRollupRepository rollupRepository, LoginRepository loginRepository,
+                                UserDataVersionRepository dataVersionRepository, PlatformTransactionManager transactionManager,
+                                @Value("${ROLLUP_REBUILD_ON_STARTUP:false}") boolean rebuildOnStartup,
+                                @Value("${ROLLUP_AUTO_REPAIR:true}") boolean autoRepair) {
+        this.rollupRepository = rollupRepository;
+        this.loginRepository = loginRepository;
+        this.dataVersionRepository = dataVersionRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.rebuildOnStartup = rebuildOnStartup;
+        this.autoRepair = autoRepair;
+    }
+
+    // Write maintenance
+    @Transactional
+    public void applyCreated(List<Expense> expenses) {
+        // One upsert per distinct rollup row rather than per expense
+        Map<ExpenseMonthlyRollupId, Delta> deltas = new LinkedHashMap<>();
+        for (Expense expense : expenses) {
+            deltas.computeIfAbsent(ExpenseMonthlyRollupId.of(expense), key -> new Delta()).add(expense.getCost());
+        }
+        deltas.forEach((key, delta) -> apply(key, delta.cost, delta.count));
+    }
+
+    @Transactional
+    public void applyCreated(Expense expense) {
+        apply(ExpenseMonthlyRollupId.of(expense), expense.getCost(), 1);
+    }
+
+    @Transactional
+    public void applyDeleted(ExpenseMonthlyRollupId key, BigDecimal cost) {
+        apply(key, cost.negate(), -1);
+    }
+
+    @Transactional
+    public void applyUpdated(ExpenseMonthlyRollupId oldKey, BigDecimal oldCost, Expense updated) {
+        ExpenseMonthlyRollupId newKey = ExpenseMonthlyRollupId.of(updated);
+        if (oldKey.equals(newKey)) {
+            BigDecimal difference = updated.getCost().subtract(oldCost);
+            if (difference.signum() != 0) {
+                apply(newKey, difference, 0);
+            }
+            return;
+        }
+        apply(oldKey, oldCost.negate(), -1);
+        apply(newKey, updated.getCost(), 1);
+    }
+
+    private void apply(ExpenseMonthlyRollupId key, BigDecimal cost, long count) {
+        rollupRepository.applyDelta(key.getUserId(), key.getYearMonth(), key.getCategory(),
+                key.getPaymentMethod(), cost, count);
+    }
+
+    // Reads
+    @Transactional(readOnly = true)
+    public BigDecimal getTotal(Long userId) {
+        return rollupRepository.getTotalCostByUserId(userId);
+    }
+
+    @Transactional(readOnly = true)
+    public BigDecimal getTotalByCategory(Long userId, String category) {
+        return rollupRepository.getTotalCostByUserIdAndCategory(userId, category);
+    }
+
+    // Sum over whole months from fromMonth to toMonth inclusive (both first-of-month dates)
+    @Transactional(readOnly = true)
+    public BigDecimal getTotalForMonths(Long userId, LocalDate fromMonth, LocalDate toMonth) {
+        return rollupRepository.getTotalCostByUserIdAndMonths(userId, fromMonth, toMonth);
+    }
+
+    // Rebuild and consistency check
+    // Concurrent writes for the same user during a rebuild can leave the rollups off;
+    // the consistency check detects that and rebuilds again
+    public void rebuild(Long userId) {
+        transactionTemplate.executeWithoutResult(status -> {
+            rollupRepository.deleteByUserId(userId);
+            rollupRepository.insertFromExpenses(userId);
+            // A repaired rollup may change totals that are already cached, on any instance
+            dataVersionRepository.touch(userId);
+        });
+    }
+
+    // Backfill for every user, one transaction per user
+    public void rebuildAll() {
+        List<Long> userIds = loginRepository.findAllIds();
+        for (Long userId : userIds) {
+            rebuild(userId);
+        }
+        log.info("Rebuilt expense rollups for {} users", userIds.size());
+    }
+
+    @Transactional(readOnly = true)
+    public List<Long> findInconsistentUserIds() {
+        return rollupRepository.findInconsistentUserIds();
+    }
+
+    // Disabled unless ROLLUP_CHECK_CRON is set, e.g. "0 30 3 * * *"
+    @Scheduled(cron = "${ROLLUP_CHECK_CRON:-}")
+    public void checkConsistency() {
+        List<Long> userIds = findInconsistentUserIds();
+        if (userIds.isEmpty()) {
+            log.info("Expense rollups are consistent");
+            return;
+        }
+        log.warn("Expense rollups differ from raw expenses for users {}", userIds);
+        if (autoRepair) {
+            userIds.forEach(this::rebuild);
+            log.info("Rebuilt expense rollups for {} users", userIds.size());
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        if (rebuildOnStartup) {
+            rebuildAll();
+        }
+    }
+
+    private static class Delta {
+        private BigDecimal cost = BigDecimal.ZERO;
+        private long count;
+
+        void add(BigDecimal amount) {
+            cost = cost.add(amount);
+            count++;
+        }
+    }
+}
@@ -1,28 +1,87 @@
 package com.example.demo.service;
 
+import com.example.demo.config.CacheConfig;
+import com.example.demo.exception.PreconditionFailedException;
 import com.example.demo.model.Expense;
+import com.example.demo.model.ExpenseBatchResult;
+import com.example.demo.model.ExpenseCursor;
+import com.example.demo.model.ExpenseEventType;
+import com.example.demo.model.ExpenseFilter;
+import com.example.demo.model.ExpensePage;
+import com.example.demo.model.ExpenseQueryCursor;
+import com.example.demo.model.ExpenseSearchCursor;
+import com.example.demo.model.ExpenseSearchHit;
+import com.example.demo.model.ExpenseSort;
+import com.example.demo.model.ExpenseView;
+import com.example.demo.model.ExpenseSummary;
+import com.example.demo.model.ExportFormat;
+import com.example.demo.model.SummaryDimension;
 import com.example.demo.repository.ExpenseRepository;
+import com.example.demo.repository.ExpenseRepositoryCustom;
+import com.example.demo.repository.ExpenseSpecifications;
+import com.example.demo.util.ExpenseColumns;
+import com.example.demo.util.ExpenseExportWriter;
+import jakarta.persistence.EntityManager;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.BiFunction;
+import java.util.stream.Stream;
 
 @Service
 public class ExpenseService {
     
+    public static final int MAX_PAGE_SIZE = 500;
+    public static final int MAX_BATCH_SIZE = 5000;
+    // Matches hibernate.jdbc.batch_size; the persistence context is flushed and cleared after each chunk
+    private static final int BATCH_CHUNK_SIZE = 50;
+    // DECIMAL(10,2)
+    private static final BigDecimal MAX_COST = new BigDecimal("99999999.99");
+    // Date bounds used when the caller does not restrict the date range
+    public static final LocalDate EARLIEST_DATE = LocalDate.of(1, 1, 1);
+    public static final LocalDate LATEST_DATE = LocalDate.of(9999, 12, 31);
+    
     private final ExpenseRepository expenseRepository;
+    private final ExpenseRollupService rollupService;
+    private final ExpenseChangeFeed changeFeed;
+    private final ExpenseExportWriter exportWriter;
+    private final EntityManager entityManager;
+    private final ReadYourWritesWindow readYourWrites;
+    private final ExpenseColumnStore columnStore;
     
-    public ExpenseService(ExpenseRepository expenseRepository) {
+    public ExpenseService(ExpenseRepository expenseRepository, ExpenseRollupService rollupService,
+                          ExpenseChangeFeed changeFeed,
+                          ExpenseExportWriter exportWriter, EntityManager entityManager,
+                          ReadYourWritesWindow readYourWrites, ExpenseColumnStore columnStore) {
         this.expenseRepository = expenseRepository;
+        this.rollupService = rollupService;
+        this.changeFeed = changeFeed;
+        this.exportWriter = exportWriter;
+        this.entityManager = entityManager;
+        this.readYourWrites = readYourWrites;
+        this.columnStore = columnStore;
     }
     
     // CRUD Operations
     @Transactional(readOnly = true)
-    public List<Expense> getAllExpensesByUserId(Long userId) {
-        return expenseRepository.findByUserIdOrderByExpenseDateDesc(userId);
+    public <T> ExpensePage<T> getAllExpensesByUserId(Long userId, String cursor, int limit, ExpenseView<T> view) {
+        return page(cursor, limit, view, (after, pageable) ->
+                expenseRepository.findPageByUserId(userId, after.expenseDate(), after.id(), pageable, view.getType()));
     }
     
     @Transactional(readOnly = true)
@@ -33,92 +92,383 @@ public class ExpenseService {
     
     @Transactional
     public Expense createExpense(Expense expense) {
-        return expenseRepository.save(expense);
+        // The cost column rounds to cents on insert, but save() does not read the row back, so the entity
+        // is rounded the same way for the response, the rollups, the change feed and the column store
+        if (expense.getCost() != null && expense.getCost().scale() > 2) {
+            expense.setCost(expense.getCost().setScale(2, RoundingMode.HALF_UP));
+        }
+        Expense saved = expenseRepository.save(expense);
+        rollupService.applyCreated(saved);
+        long version = dataChanged(saved.getUserId(), ExpenseEventType.CREATED, List.of(saved));
+        if (columnStore.isEnabled()) {
+            columnStore.savedAfterCommit(saved.getUserId(), version, List.of(ExpenseColumns.Row.of(saved)));
+        }
+        return saved;
     }
     
+    // Validates every row, then inserts the valid ones with JDBC batching.
+    // Rejected rows are reported by index and do not stop the rest of the batch.
     @Transactional
-    public Expense updateExpense(Long expenseId, Long userId, Expense updatedExpense) {
-        return expenseRepository.findById(expenseId)
-                .filter(expense -> expense.getUserId().equals(userId))
-                .map(existingExpense -> {
-                    existingExpense.setItem(updatedExpense.getItem());
-                    existingExpense.setCost(updatedExpense.getCost());
-                    existingExpense.setExpenseDate(updatedExpense.getExpenseDate());
-                    existingExpense.setCategory(updatedExpense.getCategory());
-                    existingExpense.setDescription(updatedExpense.getDescription());
-                    existingExpense.setPaymentMethod(updatedExpense.getPaymentMethod());
-                    existingExpense.setLocation(updatedExpense.getLocation());
-                    return expenseRepository.save(existingExpense);
-                })
-                .orElseThrow(() -> new RuntimeException("Expense not found or access denied"));
+    public ExpenseBatchResult createExpenses(Long userId, List<Expense> expenses) {
+        ExpenseBatchResult.Item[] results = new ExpenseBatchResult.Item[expenses.size()];
+        List<Expense> chunk = new ArrayList<>(BATCH_CHUNK_SIZE);
+        List<Integer> chunkIndexes = new ArrayList<>(BATCH_CHUNK_SIZE);
+        List<Expense> created = new ArrayList<>();
+        int rejected = 0;
+        for (int i = 0; i < expenses.size(); i++) {
+            Expense expense = expenses.get(i);
+            String error = validate(expense);
+            if (error != null) {
+                results[i] = ExpenseBatchResult.Item.rejected(i, error);
+                rejected++;
+                continue;
+            }
+            expense.setId(null);
+            expense.setUserId(userId);
+            chunk.add(expense);
+            chunkIndexes.add(i);
+            if (chunk.size() == BATCH_CHUNK_SIZE) {
+                saveChunk(chunk, chunkIndexes, results, created);
+            }
+        }
+        saveChunk(chunk, chunkIndexes, results, created);
+        // A batch that was rejected entirely changed nothing
+        if (!created.isEmpty()) {
+            long version = dataChanged(userId, ExpenseEventType.CREATED, created);
+            if (columnStore.isEnabled()) {
+                columnStore.savedAfterCommit(userId, version, created.stream().map(ExpenseColumns.Row::of).toList());
+            }
+        }
+        return new ExpenseBatchResult(expenses.size() - rejected, rejected, List.of(results));
+    }
+    
+    private void saveChunk(List<Expense> chunk, List<Integer> chunkIndexes, ExpenseBatchResult.Item[] results,
+                           List<Expense> created) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        expenseRepository.saveAll(chunk);
+        rollupService.applyCreated(chunk);
+        entityManager.flush();
+        for (int i = 0; i < chunk.size(); i++) {
+            results[chunkIndexes.get(i)] = ExpenseBatchResult.Item.created(chunkIndexes.get(i), chunk.get(i).getId());
+        }
+        created.addAll(chunk);
+        entityManager.clear();
+        chunk.clear();
+        chunkIndexes.clear();
+    }
+    
+    // Checks the column constraints from V4 up front so one bad row cannot fail a whole batch.
+    // Returns null when the expense is valid.
+    public static String validate(Expense expense) {
+        return validate(expense, false);
+    }
+    
+    // For PATCH bodies: absent (null) fields are allowed, present ones must satisfy the same constraints
+    public static String validatePatch(Expense expense) {
+        return validate(expense, true);
+    }
+    
+    private static String validate(Expense expense, boolean partial) {
+        if (expense == null) {
+            return "expense is required";
+        }
+        if (expense.getItem() == null ? !partial : expense.getItem().isBlank()) {
+            return "item is required";
+        }
+        if (expense.getItem() != null && expense.getItem().length() > 255) {
+            return "item must be at most 255 characters";
+        }
+        if (expense.getCost() == null && !partial) {
+            return "cost is required";
+        }
+        if (expense.getCost() != null
+                && (expense.getCost().scale() > 2 || expense.getCost().abs().compareTo(MAX_COST) > 0)) {
+            return "cost must fit DECIMAL(10,2)";
+        }
+        if (expense.getExpenseDate() == null && !partial) {
+            return "expenseDate is required";
+        }
+        if (expense.getCategory() != null && expense.getCategory().length() > 100) {
+            return "category must be at most 100 characters";
+        }
+        if (expense.getPaymentMethod() != null && expense.getPaymentMethod().length() > 50) {
+            return "paymentMethod must be at most 50 characters";
+        }
+        if (expense.getLocation() != null && expense.getLocation().length() > 255) {
+            return "location must be at most 255 characters";
+        }
+        return null;
     }
     
+    // Each write is a single statement scoped to the user's row: no entity is loaded first, and a missing
+    // or foreign expense simply matches nothing. Returns empty in that case.
+    // A non-null expectedVersion (If-Match) must equal the row's @Version, else PreconditionFailedException.
     @Transactional
-    public void deleteExpense(Long expenseId, Long userId) {
-        expenseRepository.findById(expenseId)
-                .filter(expense -> expense.getUserId().equals(userId))
-                .ifPresentOrElse(
-                    expense -> expenseRepository.delete(expense),
-                    () -> { throw new RuntimeException("Expense not found or access denied"); }
-                );
+    public Optional<Expense> updateExpense(Long expenseId, Long userId, Long expectedVersion, Expense updatedExpense) {
+        String error = validate(updatedExpense);
+        if (error != null) {
+            throw new IllegalArgumentException(error);
+        }
+        return write(expenseId, userId, expectedVersion, updatedExpense, false);
+    }
+    
+    // Like updateExpense, but only the non-null fields of changes are written
+    @Transactional
+    public Optional<Expense> patchExpense(Long expenseId, Long userId, Long expectedVersion, Expense changes) {
+        String error = validatePatch(changes);
+        if (error != null) {
+            throw new IllegalArgumentException(error);
+        }
+        return write(expenseId, userId, expectedVersion, changes, true);
+    }
+    
+    private Optional<Expense> write(Long expenseId, Long userId, Long expectedVersion, Expense values, boolean patch) {
+        Optional<ExpenseRepositoryCustom.Updated> result =
+                expenseRepository.update(expenseId, userId, expectedVersion, values, patch);
+        if (result.isEmpty()) {
+            return unchanged(expenseId, userId, expectedVersion);
+        }
+        ExpenseRepositoryCustom.Updated updated = result.get();
+        rollupService.applyUpdated(updated.previousKey(), updated.previousCost(), updated.expense());
+        long version = dataChanged(userId, ExpenseEventType.UPDATED, updated.expense());
+        if (columnStore.isEnabled()) {
+            columnStore.savedAfterCommit(userId, version, List.of(ExpenseColumns.Row.of(updated.expense())));
+        }
+        return Optional.of(updated.expense());
+    }
+    
+    // Returns false when the user has no expense with that id
+    @Transactional
+    public boolean deleteExpense(Long expenseId, Long userId, Long expectedVersion) {
+        Optional<ExpenseRepositoryCustom.Deleted> result = expenseRepository.delete(expenseId, userId, expectedVersion);
+        if (result.isEmpty()) {
+            checkVersionMismatch(expenseId, userId, expectedVersion);
+            return false;
+        }
+        rollupService.applyDeleted(result.get().key(), result.get().cost());
+        long version = dataChanged(userId, ExpenseEventType.DELETED, Map.of("id", expenseId));
+        columnStore.deletedAfterCommit(userId, version, expenseId);
+        return true;
+    }
+    
+    // An update that matched no row: the expense is missing, at another version, or already has the values.
+    // Nothing was written in the last case, so it is returned as it is and no change is recorded.
+    private Optional<Expense> unchanged(Long expenseId, Long userId, Long expectedVersion) {
+        Optional<Expense> current = getExpenseByIdAndUserId(expenseId, userId);
+        if (current.isPresent() && expectedVersion != null && !expectedVersion.equals(current.get().getVersion())) {
+            throw new PreconditionFailedException("Expense " + expenseId + " is not at version " + expectedVersion);
+        }
+        return current;
+    }
+    
+    // Only reached when a write matched no row, so the extra lookup is off the common path
+    private void checkVersionMismatch(Long expenseId, Long userId, Long expectedVersion) {
+        if (expectedVersion != null && expenseRepository.existsByIdAndUserId(expenseId, userId)) {
+            throw new PreconditionFailedException("Expense " + expenseId + " is not at version " + expectedVersion);
+        }
+    }
+    
+    // Bumps the persisted data version in the writing transaction, recording the change for the change feed
+    // under it. The version is the ETag of conditional GETs and the generation in cached analytics keys, so
+    // both move on when it commits. With replicas, the user's reads stay on the primary for the
+    // read-your-writes window. Returns the new version.
+    private long dataChanged(Long userId, ExpenseEventType type, Object event) {
+        long version = changeFeed.record(userId, type, event);
+        readYourWrites.recordAfterCommit(userId);
+        return version;
     }
     
     // Filtering Operations
     @Transactional(readOnly = true)
-    public List<Expense> getExpensesByCategory(Long userId, String category) {
-        return expenseRepository.findByUserIdAndCategoryOrderByExpenseDateDesc(userId, category);
+    public <T> ExpensePage<T> getExpensesByCategory(Long userId, String category, String cursor, int limit,
+                                                    ExpenseView<T> view) {
+        return page(cursor, limit, view, (after, pageable) ->
+                expenseRepository.findPageByUserIdAndCategory(userId, category, after.expenseDate(), after.id(), pageable,
+                        view.getType()));
+    }
+    
+    @Transactional(readOnly = true)
+    public <T> ExpensePage<T> getExpensesByDateRange(Long userId, LocalDate startDate, LocalDate endDate,
+                                                     String cursor, int limit, ExpenseView<T> view) {
+        return page(cursor, limit, view, (after, pageable) ->
+                expenseRepository.findPageByUserIdAndDateRange(userId, startDate, endDate, after.expenseDate(), after.id(),
+                        pageable, view.getType()));
     }
     
     @Transactional(readOnly = true)
-    public List<Expense> getExpensesByDateRange(Long userId, LocalDate startDate, LocalDate endDate) {
-        return expenseRepository.findByUserIdAndExpenseDateBetweenOrderByExpenseDateDesc(userId, startDate, endDate);
+    public <T> ExpensePage<T> getExpensesByCostRange(Long userId, BigDecimal minCost, BigDecimal maxCost,
+                                                     String cursor, int limit, ExpenseView<T> view) {
+        return page(cursor, limit, view, (after, pageable) ->
+                expenseRepository.findPageByUserIdAndCostRange(userId, minCost, maxCost, after.expenseDate(), after.id(),
+                        pageable, view.getType()));
     }
     
     @Transactional(readOnly = true)
-    public List<Expense> getExpensesByCostRange(Long userId, BigDecimal minCost, BigDecimal maxCost) {
-        return expenseRepository.findByUserIdAndCostBetweenOrderByExpenseDateDesc(userId, minCost, maxCost);
+    public <T> ExpensePage<T> getExpensesByPaymentMethod(Long userId, String paymentMethod, String cursor, int limit,
+                                                         ExpenseView<T> view) {
+        return page(cursor, limit, view, (after, pageable) ->
+                expenseRepository.findPageByUserIdAndPaymentMethod(userId, paymentMethod, after.expenseDate(), after.id(),
+                        pageable, view.getType()));
     }
     
     @Transactional(readOnly = true)
-    public List<Expense> getExpensesByPaymentMethod(Long userId, String paymentMethod) {
-        return expenseRepository.findByUserIdAndPaymentMethodOrderByExpenseDateDesc(userId, paymentMethod);
+    public ExpensePage<ExpenseSearchHit> searchExpenses(Long userId, String query, String cursor, int limit) {
+        int pageSize = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+        List<ExpenseSearchHit> hits = expenseRepository.search(userId, query.trim(),
+                ExpenseSearchCursor.decode(cursor), pageSize + 1);
+        if (hits.size() <= pageSize) {
+            return new ExpensePage<>(hits, null);
+        }
+        List<ExpenseSearchHit> items = hits.subList(0, pageSize);
+        return new ExpensePage<>(items, ExpenseSearchCursor.after(items.get(pageSize - 1)).encode());
     }
     
+    // Any combination of filters, executed as a single query ordered by (sort attribute, id)
     @Transactional(readOnly = true)
-    public List<Expense> searchExpensesByItem(Long userId, String itemName) {
-        return expenseRepository.findByUserIdAndItemContainingIgnoreCaseOrderByExpenseDateDesc(userId, itemName);
+    public <T> ExpensePage<T> queryExpenses(Long userId, ExpenseFilter filter, ExpenseSort sort,
+                                            Sort.Direction direction, String cursor, int limit, ExpenseView<T> view) {
+        int pageSize = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+        Specification<Expense> specification = ExpenseSpecifications.matching(userId, filter);
+        ExpenseQueryCursor after = ExpenseQueryCursor.decode(cursor, sort, direction);
+        if (after != null) {
+            specification = specification.and(ExpenseSpecifications.after(after));
+        }
+        List<T> rows = expenseRepository.findBy(specification, query -> query
+                .as(view.getType())
+                .sortBy(Sort.by(direction, sort.getAttribute(), "id"))
+                .limit(pageSize + 1)
+                .all());
+        if (rows.size() <= pageSize) {
+            return new ExpensePage<>(rows, null);
+        }
+        List<T> items = rows.subList(0, pageSize);
+        return new ExpensePage<>(items, view.positionOf(items.get(pageSize - 1), sort, direction).encode());
+    }
+    
+    // Export
+    // Reads the range as keyset pages of MAX_PAGE_SIZE rows, each planned like a list page: every yearly
+    // partition's (user_id, expense_date, id) index read in order and merged, so nothing is sorted and the
+    // first rows go out before the last are read. Rows are detached once written, so the persistence
+    // context holds one page at most. Repeatable read keeps every page on the same snapshot.
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public long exportExpenses(Long userId, LocalDate startDate, LocalDate endDate, ExportFormat format,
+                               OutputStream out) throws IOException {
+        LocalDate from = startDate != null ? startDate : EARLIEST_DATE;
+        LocalDate to = endDate != null ? endDate : LATEST_DATE;
+        Stream<Expense> expenses = Stream.iterate(exportPage(userId, from, to, ExpenseCursor.FIRST),
+                        page -> !page.isEmpty(),
+                        page -> page.size() < MAX_PAGE_SIZE
+                                ? List.of()
+                                : exportPage(userId, from, to, ExpenseCursor.after(page.get(page.size() - 1))))
+                .flatMap(List::stream);
+        return exportWriter.write(expenses, format, out, entityManager::detach);
+    }
+    
+    private List<Expense> exportPage(Long userId, LocalDate from, LocalDate to, ExpenseCursor after) {
+        return expenseRepository.findPageByUserIdAndDateRange(userId, from, to, after.expenseDate(), after.id(),
+                PageRequest.ofSize(MAX_PAGE_SIZE), Expense.class);
+    }
+    
+    // Fetches one row more than requested to learn whether another page exists
+    private <T> ExpensePage<T> page(String cursor, int limit, ExpenseView<T> view,
+                                    BiFunction<ExpenseCursor, Pageable, List<T>> query) {
+        int pageSize = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+        List<T> rows = query.apply(ExpenseCursor.decode(cursor), PageRequest.ofSize(pageSize + 1));
+        if (rows.size() <= pageSize) {
+            return new ExpensePage<>(rows, null);
+        }
+        List<T> items = rows.subList(0, pageSize);
+        return new ExpensePage<>(items, view.positionOf(items.get(pageSize - 1)).encode());
     }
     
     // Analytics Operations
+    // Totals are read from the monthly rollups (expense_monthly_rollups) instead of scanning raw rows,
+    // or from the user's in-memory columns when the ExpenseColumnStore is enabled.
+    // Analytics and metadata results are cached per user until that user's next write.
+    @Cacheable(cacheNames = CacheConfig.ANALYTICS_CACHE, keyGenerator = "analyticsKeyGenerator")
     @Transactional(readOnly = true)
     public BigDecimal getTotalExpensesByUserId(Long userId) {
-        BigDecimal total = expenseRepository.getTotalCostByUserId(userId);
-        return total != null ? total : BigDecimal.ZERO;
+        if (columnStore.isEnabled()) {
+            return columnStore.total(userId);
+        }
+        return rollupService.getTotal(userId);
     }
     
+    // Whole months inside the range come from the rollups; only the partial months
+    // at either end are summed from raw rows
+    @Cacheable(cacheNames = CacheConfig.ANALYTICS_CACHE, keyGenerator = "analyticsKeyGenerator")
     @Transactional(readOnly = true)
     public BigDecimal getTotalExpensesByUserIdAndDateRange(Long userId, LocalDate startDate, LocalDate endDate) {
+        if (startDate.isAfter(endDate)) {
+            return BigDecimal.ZERO;
+        }
+        if (columnStore.isEnabled()) {
+            return columnStore.total(userId, startDate, endDate);
+        }
+        LocalDate fullFrom = startDate.getDayOfMonth() == 1 ? startDate : startDate.withDayOfMonth(1).plusMonths(1);
+        LocalDate fullUntil = endDate.plusDays(1).withDayOfMonth(1);
+        if (!fullFrom.isBefore(fullUntil)) {
+            return sumRawExpenses(userId, startDate, endDate);
+        }
+        BigDecimal total = rollupService.getTotalForMonths(userId, fullFrom, fullUntil.minusMonths(1));
+        if (startDate.isBefore(fullFrom)) {
+            total = total.add(sumRawExpenses(userId, startDate, fullFrom.minusDays(1)));
+        }
+        if (!endDate.isBefore(fullUntil)) {
+            total = total.add(sumRawExpenses(userId, fullUntil, endDate));
+        }
+        return total;
+    }
+    
+    private BigDecimal sumRawExpenses(Long userId, LocalDate startDate, LocalDate endDate) {
         BigDecimal total = expenseRepository.getTotalCostByUserIdAndDateRange(userId, startDate, endDate);
         return total != null ? total : BigDecimal.ZERO;
     }
     
+    @Cacheable(cacheNames = CacheConfig.ANALYTICS_CACHE, keyGenerator = "analyticsKeyGenerator")
     @Transactional(readOnly = true)
     public BigDecimal getTotalExpensesByUserIdAndCategory(Long userId, String category) {
-        BigDecimal total = expenseRepository.getTotalCostByUserIdAndCategory(userId, category);
-        return total != null ? total : BigDecimal.ZERO;
+        if (columnStore.isEnabled()) {
+            return columnStore.totalForCategory(userId, category);
+        }
+        return rollupService.getTotalByCategory(userId, category);
     }
     
+    @Cacheable(cacheNames = CacheConfig.ANALYTICS_CACHE, keyGenerator = "analyticsKeyGenerator")
     @Transactional(readOnly = true)
     public List<String> getCategoriesByUserId(Long userId) {
+        if (columnStore.isEnabled()) {
+            return columnStore.categories(userId);
+        }
         return expenseRepository.findDistinctCategoriesByUserId(userId);
     }
     
+    @Cacheable(cacheNames = CacheConfig.ANALYTICS_CACHE, keyGenerator = "analyticsKeyGenerator")
     @Transactional(readOnly = true)
     public List<String> getPaymentMethodsByUserId(Long userId) {
+        if (columnStore.isEnabled()) {
+            return columnStore.paymentMethods(userId);
+        }
         return expenseRepository.findDistinctPaymentMethodsByUserId(userId);
     }
     
+    // Sums, counts, min, max and average for every group in one GROUP BY query,
+    // replacing separate calls for totals, categories and per-category totals
+    @Cacheable(cacheNames = CacheConfig.ANALYTICS_CACHE, keyGenerator = "analyticsKeyGenerator")
+    @Transactional(readOnly = true)
+    public ExpenseSummary getSummary(Long userId, LocalDate startDate, LocalDate endDate, List<SummaryDimension> groupBy) {
+        LocalDate from = startDate != null ? startDate : EARLIEST_DATE;
+        LocalDate to = endDate != null ? endDate : LATEST_DATE;
+        List<ExpenseSummary.Group> groups = expenseRepository.summarize(userId, from, to, groupBy);
+        return new ExpenseSummary(startDate, endDate,
+                groupBy.stream().map(SummaryDimension::getParameter).toList(),
+                ExpenseSummary.overall(groups), groups);
+    }
+    
     // Monthly/Yearly summaries
+    @Cacheable(cacheNames = CacheConfig.ANALYTICS_CACHE, keyGenerator = "analyticsKeyGenerator")
     @Transactional(readOnly = true)
     public BigDecimal getMonthlyTotal(Long userId, int year, int month) {
         LocalDate startDate = LocalDate.of(year, month, 1);
@@ -126,6 +476,7 @@ public class ExpenseService {
         return getTotalExpensesByUserIdAndDateRange(userId, startDate, endDate);
     }
     
+    @Cacheable(cacheNames = CacheConfig.ANALYTICS_CACHE, keyGenerator = "analyticsKeyGenerator")
     @Transactional(readOnly = true)
     public BigDecimal getYearlyTotal(Long userId, int year) {
         LocalDate startDate = LocalDate.of(year, 1, 1);
@@ -1,27 +1,47 @@
 package com.example.demo.service;
 
+import com.example.demo.exception.PasswordHashingBusyException;
 import com.example.demo.model.Login;
 import com.example.demo.repository.LoginRepository;
 import com.example.demo.util.JwtUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 // import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 @Service
 public class LoginService {
+    private static final Logger log = LoggerFactory.getLogger(LoginService.class);
+
     private final LoginRepository loginRepository;
-    private final BCryptPasswordEncoder passwordEncoder;
+    private final PasswordHasher passwordHasher;
     private final JwtUtil jwtUtil;
+    private final CustomUserDetailsService userDetailsService;
+    // Updates hash the new password before the transaction starts, so no connection is held during BCrypt
+    private final TransactionTemplate transactionTemplate;
+    // Spring's application task executor, for the database write after a background rehash: the
+    // hashing pool is sized for CPU work and should not wait on connections
+    private final Executor taskExecutor;
 
     // @Autowired
-    public LoginService(LoginRepository loginRepository, JwtUtil jwtUtil) {
+    public LoginService(LoginRepository loginRepository, PasswordHasher passwordHasher, JwtUtil jwtUtil,
+                        CustomUserDetailsService userDetailsService, PlatformTransactionManager transactionManager,
+                        @Qualifier("applicationTaskExecutor") Executor taskExecutor) {
         this.loginRepository = loginRepository;
-        this.passwordEncoder = new BCryptPasswordEncoder();
+        this.passwordHasher = passwordHasher;
         this.jwtUtil = jwtUtil;
+        this.userDetailsService = userDetailsService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.taskExecutor = taskExecutor;
     }
 
     @Transactional(readOnly = true) 
@@ -41,37 +61,75 @@ public class LoginService {
 
     @Transactional
     public Login createLogin(Login login) {
-        login.setPassword(passwordEncoder.encode(login.getPassword()));
+        login.setPassword(passwordHasher.encodeNow(login.getPassword()));
+        userDetailsService.evict(login.getEmail());
         return loginRepository.save(login);
     }
 
-    @Transactional
     public Login updateLogin(Long id, Login updatedLogin) {
-        return loginRepository.findById(id).map(existing -> {
+        String newPassword = updatedLogin.getPassword() != null && !updatedLogin.getPassword().isEmpty()
+                ? passwordHasher.encodeNow(updatedLogin.getPassword())
+                : null;
+        return transactionTemplate.execute(status -> loginRepository.findById(id).map(existing -> {
+            // Both the old and the new email may be cached
+            userDetailsService.evict(existing.getEmail());
+            userDetailsService.evict(updatedLogin.getEmail());
             existing.setFirstName(updatedLogin.getFirstName());
             existing.setLastName(updatedLogin.getLastName());
             existing.setEmail(updatedLogin.getEmail());
-            if (updatedLogin.getPassword() != null && !updatedLogin.getPassword().isEmpty()) {
-                existing.setPassword(passwordEncoder.encode(updatedLogin.getPassword()));
+            if (newPassword != null) {
+                existing.setPassword(newPassword);
             }
             existing.setDateOfBirth(updatedLogin.getDateOfBirth());
             return loginRepository.save(existing);
-        }).orElseThrow(() -> new RuntimeException("Login not found"));
+        }).orElseThrow(() -> new RuntimeException("Login not found")));
     }
 
     @Transactional
     public void deleteLogin(Long id) {
+        loginRepository.findById(id).ifPresent(login -> userDetailsService.evict(login.getEmail()));
         loginRepository.deleteById(id);
     }
 
-    @Transactional(readOnly = true)  
-    public boolean authenticate(String email, String rawPassword) {
+    // Checks the password on PasswordHasher's pool; the future completes with a token, or empty for
+    // bad credentials. Throws PasswordHashingBusyException when the hashing queue is full.
+    public CompletableFuture<Optional<String>> login(String email, String rawPassword) {
         Optional<Login> userOpt = loginRepository.findByEmail(email);
-        return userOpt.isPresent() && passwordEncoder.matches(rawPassword, userOpt.get().getPassword());
+        if (userOpt.isEmpty()) {
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+        Login login = userOpt.get();
+        return passwordHasher.matches(rawPassword, login.getPassword()).thenApply(matches -> {
+            if (!matches) {
+                return Optional.empty();
+            }
+            if (passwordHasher.needsRehash(login.getPassword())) {
+                rehash(login, rawPassword);
+            }
+            return Optional.of(jwtUtil.generateToken(login.getEmail(), login.getId()));
+        });
+    }
+
+    // Re-encodes with the current BCRYPT_STRENGTH in the background; the login does not wait for it
+    private void rehash(Login login, String rawPassword) {
+        try {
+            passwordHasher.encode(rawPassword).thenAcceptAsync(newPassword -> {
+                if (loginRepository.replacePassword(login.getId(), login.getPassword(), newPassword) > 0) {
+                    userDetailsService.evict(login.getEmail());
+                }
+            }, taskExecutor).exceptionally(e -> {
+                log.warn("Rehashing password for login {} failed", login.getId(), e);
+                return null;
+            });
+        } catch (PasswordHashingBusyException e) {
+            // Queue is full; the next successful login tries again
+        }
     }
 
     @Transactional(readOnly = true)
     public String generateTokenForUser(String email) {
-        return jwtUtil.generateToken(email);
+        return loginRepository.findByEmail(email)
+                .map(login -> jwtUtil.generateToken(login.getEmail(), login.getId()))
+                .orElseThrow(() -> new RuntimeException("User not found"));
     }
 } 
\ No newline at end of file
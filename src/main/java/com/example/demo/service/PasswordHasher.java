@@ -0,0 +1,118 @@
+package com.example.demo.service;
+
+import com.example.demo.exception.PasswordHashingBusyException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// Runs BCrypt on a small dedicated pool so a burst of logins cannot occupy the request threads.
+// Each hash takes ~50-100 ms of CPU at cost 10, so more threads than cores only adds latency;
+// work beyond PASSWORD_HASH_QUEUE waiting hashes is rejected immediately with PasswordHashingBusyException.
+@Component
+public class PasswordHasher {
+
+    private final BCryptPasswordEncoder encoder;
+    private final int strength;
+    private final ThreadPoolExecutor executor;
+
+    private final Timer encodeTimer;
+    private final Timer matchesTimer;
+    private final Counter rejected;
+
+    public PasswordHasher(@Value("${BCRYPT_STRENGTH:10}") int strength,
+                          @Value("${PASSWORD_HASH_THREADS:2}") int threads,
+                          @Value("${PASSWORD_HASH_QUEUE:32}") int queueCapacity,
+                          MeterRegistry meterRegistry) {
+        this.encoder = new BCryptPasswordEncoder(strength);
+        this.strength = strength;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "password-hash-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.encodeTimer = Timer.builder("password.hash").tag("operation", "encode").register(meterRegistry);
+        this.matchesTimer = Timer.builder("password.hash").tag("operation", "matches").register(meterRegistry);
+        this.rejected = Counter.builder("password.hash.rejected").register(meterRegistry);
+        Gauge.builder("password.hash.queue", executor, pool -> pool.getQueue().size()).register(meterRegistry);
+        Gauge.builder("password.hash.active", executor, ThreadPoolExecutor::getActiveCount).register(meterRegistry);
+    }
+
+    public CompletableFuture<String> encode(CharSequence rawPassword) {
+        return submit(encodeTimer, () -> encoder.encode(rawPassword));
+    }
+
+    public CompletableFuture<Boolean> matches(CharSequence rawPassword, String encodedPassword) {
+        return submit(matchesTimer, () -> encoder.matches(rawPassword, encodedPassword));
+    }
+
+    // Blocking variant for callers that cannot continue without the hash, such as registration
+    public String encodeNow(CharSequence rawPassword) {
+        try {
+            return encode(rawPassword).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    // True when the hash was produced with a different cost than BCRYPT_STRENGTH, e.g. "$2a$10$..."
+    // after the strength was raised to 12; such hashes are replaced on the next successful login
+    public boolean needsRehash(String encodedPassword) {
+        if (encodedPassword == null || encodedPassword.length() < 7 || encodedPassword.charAt(3) != '$') {
+            return false;
+        }
+        try {
+            return Integer.parseInt(encodedPassword.substring(4, 6)) != strength;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private <T> CompletableFuture<T> submit(Timer timer, Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(() -> timer.record(task), executor);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new PasswordHashingBusyException();
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    public int getStrength() { return strength; }
+    public int getThreads() { return executor.getMaximumPoolSize(); }
+    public int getActive() { return executor.getActiveCount(); }
+    public int getQueueDepth() { return executor.getQueue().size(); }
+    public int getQueueCapacity() { return executor.getQueue().size() + executor.getQueue().remainingCapacity(); }
+    public long getRejected() { return (long) rejected.count(); }
+    public long getHashCount() { return encodeTimer.count() + matchesTimer.count(); }
+
+    public double getAverageHashMillis() {
+        long count = getHashCount();
+        double totalMillis = encodeTimer.totalTime(TimeUnit.MILLISECONDS) + matchesTimer.totalTime(TimeUnit.MILLISECONDS);
+        return count == 0 ? 0.0 : totalMillis / count;
+    }
+
+    // Largest hash in the timers' recent window rather than since startup
+    public double getMaxHashMillis() {
+        return Math.max(encodeTimer.max(TimeUnit.MILLISECONDS), matchesTimer.max(TimeUnit.MILLISECONDS));
+    }
+}
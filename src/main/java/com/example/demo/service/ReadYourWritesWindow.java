@@ -0,0 +1,61 @@
+package com.example.demo.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+
+// Users who wrote through this instance within the last READ_YOUR_WRITES_MS. While replicas are
+// configured, their read-only transactions go to the primary so they never read a replica that has
+// not yet replayed their own write. Replicas up to DB_REPLICA_MAX_LAG_MS behind stay in rotation, so
+// the window defaults to that lag and may not be shorter. Only this instance knows of the window:
+// reads validated by the user's data version are checked against the replica instead (ReplicaDataSource),
+// which also covers writes made elsewhere; the window keeps the other reads, such as a single expense,
+// on the primary and saves recent writers that check. Without replicas it is off.
+@Component
+public class ReadYourWritesWindow {
+
+    private final Cache<Long, Boolean> recentWriters;
+
+    public ReadYourWritesWindow(@Value("${DB_REPLICA_URLS:}") String replicaUrls,
+                                @Value("${DB_REPLICA_MAX_LAG_MS:10000}") long maxLagMillis,
+                                @Value("${READ_YOUR_WRITES_MS:${DB_REPLICA_MAX_LAG_MS:10000}}") long windowMillis,
+                                @Value("${CACHE_GENERATIONS_SIZE:200000}") long maxUsers) {
+        boolean replicas = !replicaUrls.isBlank();
+        if (replicas && windowMillis < maxLagMillis) {
+            throw new IllegalStateException("READ_YOUR_WRITES_MS (" + windowMillis + ") must be at least "
+                    + "DB_REPLICA_MAX_LAG_MS (" + maxLagMillis + "), or users may read a replica that lacks their own writes");
+        }
+        this.recentWriters = replicas && windowMillis > 0
+                ? Caffeine.newBuilder()
+                        .expireAfterWrite(Duration.ofMillis(windowMillis))
+                        .maximumSize(maxUsers)
+                        .build()
+                : null;
+    }
+
+    // The window starts at commit, when the write becomes visible on the primary
+    public void recordAfterCommit(Long userId) {
+        if (recentWriters == null) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            recentWriters.put(userId, Boolean.TRUE);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                recentWriters.put(userId, Boolean.TRUE);
+            }
+        });
+    }
+
+    public boolean isRecentWriter(Long userId) {
+        return recentWriters != null && recentWriters.getIfPresent(userId) != null;
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.demo.service;
+
+import com.example.demo.model.UserDataVersion;
+import com.example.demo.repository.UserDataVersionRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+// Generation numbers that are part of every per-user cache key. A user's generation is their persisted
+// data version (user_data_versions, V9), which every write, and every other change to what they can read,
+// moves on in the same transaction. Living in the database, it abandons what every instance cached for
+// the old version, whichever instance the change went through.
+// It is read from the primary. DataVersionInterceptor reads it once per request and the rest of the
+// request keys its caches with that value, so a cached read costs no extra lookup.
+@Component
+public class UserCacheGenerations {
+
+    private static final String REQUEST_ATTRIBUTE = UserCacheGenerations.class.getName() + ".generation";
+
+    private final UserDataVersionRepository dataVersionRepository;
+
+    public UserCacheGenerations(UserDataVersionRepository dataVersionRepository) {
+        this.dataVersionRepository = dataVersionRepository;
+    }
+
+    public long current(Long userId) {
+        long remembered = rememberedForRequest(userId);
+        return remembered >= 0 ? remembered : read(userId);
+    }
+
+    // The generation currentForRequest kept for this user in the current request, or -1. Static so the
+    // replica routing, which sits below the repositories, can compare it without depending on this bean.
+    public static long rememberedForRequest(Long userId) {
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        if (request != null && request.getAttribute(REQUEST_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) instanceof Generation remembered
+                && remembered.userId().equals(userId)) {
+            return remembered.version();
+        }
+        return -1;
+    }
+
+    // Reads the generation and keeps it for the rest of the current request. Only for requests that
+    // do not write, which would move it on.
+    public long currentForRequest(Long userId) {
+        long version = read(userId);
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        if (request != null) {
+            request.setAttribute(REQUEST_ATTRIBUTE, new Generation(userId, version), RequestAttributes.SCOPE_REQUEST);
+        }
+        return version;
+    }
+
+    // Users who never wrote anything are at version 0
+    private long read(Long userId) {
+        return dataVersionRepository.findOnPrimary(userId).map(UserDataVersion::getVersion).orElse(0L);
+    }
+
+    private record Generation(Long userId, long version) {
+    }
+}
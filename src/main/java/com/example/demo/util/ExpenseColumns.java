@@ -0,0 +1,354 @@
+package com.example.demo.util;
+
+import com.example.demo.model.Expense;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// One user's expenses as primitive columns sorted by (expense_date, id): cost in cents, date as epoch day,
+// and category and payment method as ids into per-user dictionaries (0 stands for null). Prefix sums over
+// cost answer the total for any date range with two binary searches and a subtraction.
+// Instances are immutable; every change returns a new instance, so readers never lock.
+public final class ExpenseColumns {
+
+    public static final ExpenseColumns EMPTY = new Builder().build();
+
+    // Per row: id, version, cents and prefix sum (8 bytes each), day, category and payment method (4 each)
+    private static final int BYTES_PER_ROW = 44;
+    private static final int BYTES_PER_NAME = 64;
+    private static final int BYTES_PER_DELETED_ID = 8;
+    // Past this many deletes the columns ask to be reloaded, which starts again without tombstones
+    static final int MAX_DELETED_IDS = 256;
+    private static final int BYTES_FIXED = 256;
+
+    private final long[] ids;
+    private final int[] days;
+    private final long[] cents;
+    private final int[] categories;
+    private final int[] paymentMethods;
+    private final long[] versions;
+    // prefix[i] is the sum of cents[0..i)
+    private final long[] prefix;
+    private final Dictionary categoryNames;
+    private final Dictionary paymentMethodNames;
+    private final long[] categoryTotals;
+    private final int[] categoryCounts;
+    private final int[] paymentMethodCounts;
+    // Ids deleted since loading, sorted, so a late update for one of them cannot bring it back
+    private final long[] deletedIds;
+
+    private ExpenseColumns(long[] ids, int[] days, long[] cents, int[] categories, int[] paymentMethods, long[] versions,
+                           Dictionary categoryNames, Dictionary paymentMethodNames, long[] deletedIds) {
+        this.ids = ids;
+        this.days = days;
+        this.cents = cents;
+        this.categories = categories;
+        this.paymentMethods = paymentMethods;
+        this.versions = versions;
+        this.categoryNames = categoryNames;
+        this.paymentMethodNames = paymentMethodNames;
+        this.deletedIds = deletedIds;
+        this.prefix = new long[ids.length + 1];
+        this.categoryTotals = new long[categoryNames.size()];
+        this.categoryCounts = new int[categoryNames.size()];
+        this.paymentMethodCounts = new int[paymentMethodNames.size()];
+        for (int i = 0; i < ids.length; i++) {
+            prefix[i + 1] = prefix[i] + cents[i];
+            categoryTotals[categories[i]] += cents[i];
+            categoryCounts[categories[i]]++;
+            paymentMethodCounts[paymentMethods[i]]++;
+        }
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    public long totalCents() {
+        return prefix[ids.length];
+    }
+
+    // Both bounds inclusive
+    public long totalCents(int fromDay, int toDay) {
+        if (fromDay > toDay) {
+            return 0;
+        }
+        return prefix[lowerBound(toDay + 1)] - prefix[lowerBound(fromDay)];
+    }
+
+    // As in the rollups, which store a missing category as '', "" also covers expenses without one
+    public long categoryTotalCents(String category) {
+        int id = categoryNames.idOf(category);
+        long total = id > 0 ? categoryTotals[id] : 0;
+        if (category.isEmpty()) {
+            total += categoryTotals[0];
+        }
+        return total;
+    }
+
+    public List<String> categories() {
+        return categoryNames.namesIn(categoryCounts);
+    }
+
+    public List<String> paymentMethods() {
+        return paymentMethodNames.namesIn(paymentMethodCounts);
+    }
+
+    // Rough heap footprint, used as the cache weight
+    public long estimatedBytes() {
+        return BYTES_FIXED + (long) ids.length * BYTES_PER_ROW
+                + (long) (categoryNames.size() + paymentMethodNames.size()) * BYTES_PER_NAME
+                + (long) deletedIds.length * BYTES_PER_DELETED_ID;
+    }
+
+    // True once enough deletes have piled up that the owner should drop these columns and load them again
+    public boolean needsReload() {
+        return deletedIds.length >= MAX_DELETED_IDS;
+    }
+
+    // Adds the row or replaces an older version of it; a version already seen or a deleted id is ignored,
+    // so applying the same change twice or out of order leaves the same state
+    public ExpenseColumns with(Row row) {
+        if (Arrays.binarySearch(deletedIds, row.id()) >= 0) {
+            return this;
+        }
+        int existing = indexOf(row.id());
+        if (existing >= 0 && versions[existing] >= row.version()) {
+            return this;
+        }
+        return change(existing, row, deletedIds);
+    }
+
+    public ExpenseColumns without(long id) {
+        int at = Arrays.binarySearch(deletedIds, id);
+        return change(indexOf(id), null, at >= 0 ? deletedIds : insertAt(deletedIds, -at - 1, id));
+    }
+
+    private ExpenseColumns change(int removeIndex, Row insert, long[] deleted) {
+        long[] newIds = ids;
+        int[] newDays = days;
+        long[] newCents = cents;
+        int[] newCategories = categories;
+        int[] newPaymentMethods = paymentMethods;
+        long[] newVersions = versions;
+        if (removeIndex >= 0) {
+            newIds = removeAt(newIds, removeIndex);
+            newDays = removeAt(newDays, removeIndex);
+            newCents = removeAt(newCents, removeIndex);
+            newCategories = removeAt(newCategories, removeIndex);
+            newPaymentMethods = removeAt(newPaymentMethods, removeIndex);
+            newVersions = removeAt(newVersions, removeIndex);
+        }
+        Dictionary newCategoryNames = categoryNames;
+        Dictionary newPaymentMethodNames = paymentMethodNames;
+        if (insert != null) {
+            newCategoryNames = categoryNames.with(insert.category());
+            newPaymentMethodNames = paymentMethodNames.with(insert.paymentMethod());
+            int at = insertionPoint(newDays, newIds, insert.day(), insert.id());
+            newIds = insertAt(newIds, at, insert.id());
+            newDays = insertAt(newDays, at, insert.day());
+            newCents = insertAt(newCents, at, insert.cents());
+            newCategories = insertAt(newCategories, at, newCategoryNames.idOf(insert.category()));
+            newPaymentMethods = insertAt(newPaymentMethods, at, newPaymentMethodNames.idOf(insert.paymentMethod()));
+            newVersions = insertAt(newVersions, at, insert.version());
+        }
+        return new ExpenseColumns(newIds, newDays, newCents, newCategories, newPaymentMethods, newVersions,
+                newCategoryNames, newPaymentMethodNames, deleted);
+    }
+
+    // Rows are ordered by day, so the id can sit anywhere
+    private int indexOf(long id) {
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] == id) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // First row on or after day
+    private int lowerBound(int day) {
+        int low = 0;
+        int high = days.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (days[mid] < day) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int insertionPoint(int[] days, long[] ids, int day, long id) {
+        int low = 0;
+        int high = days.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (days[mid] < day || (days[mid] == day && ids[mid] < id)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static long[] removeAt(long[] values, int index) {
+        long[] result = new long[values.length - 1];
+        System.arraycopy(values, 0, result, 0, index);
+        System.arraycopy(values, index + 1, result, index, values.length - index - 1);
+        return result;
+    }
+
+    private static int[] removeAt(int[] values, int index) {
+        int[] result = new int[values.length - 1];
+        System.arraycopy(values, 0, result, 0, index);
+        System.arraycopy(values, index + 1, result, index, values.length - index - 1);
+        return result;
+    }
+
+    private static long[] insertAt(long[] values, int index, long value) {
+        long[] result = new long[values.length + 1];
+        System.arraycopy(values, 0, result, 0, index);
+        result[index] = value;
+        System.arraycopy(values, index, result, index + 1, values.length - index);
+        return result;
+    }
+
+    private static int[] insertAt(int[] values, int index, int value) {
+        int[] result = new int[values.length + 1];
+        System.arraycopy(values, 0, result, 0, index);
+        result[index] = value;
+        System.arraycopy(values, index, result, index + 1, values.length - index);
+        return result;
+    }
+
+    // The columns of one expense
+    public record Row(long id, int day, long cents, String category, String paymentMethod, long version) {
+
+        public static Row of(Expense expense) {
+            return new Row(expense.getId(), (int) expense.getExpenseDate().toEpochDay(),
+                    expense.getCost().movePointRight(2).longValueExact(), expense.getCategory(),
+                    expense.getPaymentMethod(), expense.getVersion() != null ? expense.getVersion() : 0);
+        }
+    }
+
+    // Collects rows that arrive in (day, id) order, as from a query ordered by expense_date, id
+    public static final class Builder {
+
+        private long[] ids = new long[16];
+        private int[] days = new int[16];
+        private long[] cents = new long[16];
+        private int[] categories = new int[16];
+        private int[] paymentMethods = new int[16];
+        private long[] versions = new long[16];
+        private int size;
+        private final Dictionary.Growing categoryNames = new Dictionary.Growing();
+        private final Dictionary.Growing paymentMethodNames = new Dictionary.Growing();
+
+        public Builder add(Row row) {
+            if (size > 0 && (row.day() < days[size - 1] || (row.day() == days[size - 1] && row.id() <= ids[size - 1]))) {
+                throw new IllegalArgumentException("Rows must be added in (day, id) order");
+            }
+            if (size == ids.length) {
+                int capacity = size * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                days = Arrays.copyOf(days, capacity);
+                cents = Arrays.copyOf(cents, capacity);
+                categories = Arrays.copyOf(categories, capacity);
+                paymentMethods = Arrays.copyOf(paymentMethods, capacity);
+                versions = Arrays.copyOf(versions, capacity);
+            }
+            ids[size] = row.id();
+            days[size] = row.day();
+            cents[size] = row.cents();
+            categories[size] = categoryNames.add(row.category());
+            paymentMethods[size] = paymentMethodNames.add(row.paymentMethod());
+            versions[size] = row.version();
+            size++;
+            return this;
+        }
+
+        public ExpenseColumns build() {
+            return new ExpenseColumns(Arrays.copyOf(ids, size), Arrays.copyOf(days, size), Arrays.copyOf(cents, size),
+                    Arrays.copyOf(categories, size), Arrays.copyOf(paymentMethods, size), Arrays.copyOf(versions, size),
+                    categoryNames.build(), paymentMethodNames.build(), new long[0]);
+        }
+    }
+
+    // Names by id; id 0 is null
+    private static final class Dictionary {
+
+        private final String[] names;
+        private final Map<String, Integer> ids;
+
+        private Dictionary(String[] names, Map<String, Integer> ids) {
+            this.names = names;
+            this.ids = ids;
+        }
+
+        int size() {
+            return names.length;
+        }
+
+        // -1 for a name not in the dictionary
+        int idOf(String name) {
+            if (name == null) {
+                return 0;
+            }
+            Integer id = ids.get(name);
+            return id != null ? id : -1;
+        }
+
+        Dictionary with(String name) {
+            if (name == null || ids.containsKey(name)) {
+                return this;
+            }
+            String[] newNames = Arrays.copyOf(names, names.length + 1);
+            newNames[names.length] = name;
+            Map<String, Integer> newIds = new HashMap<>(ids);
+            newIds.put(name, names.length);
+            return new Dictionary(newNames, newIds);
+        }
+
+        // Names that still have rows; a name whose rows are all gone stays in the dictionary until the next load
+        List<String> namesIn(int[] counts) {
+            List<String> result = new ArrayList<>();
+            for (int id = 1; id < names.length; id++) {
+                if (counts[id] > 0) {
+                    result.add(names[id]);
+                }
+            }
+            return result;
+        }
+
+        static final class Growing {
+
+            private final List<String> names = new ArrayList<>();
+            private final Map<String, Integer> ids = new HashMap<>();
+
+            Growing() {
+                names.add(null);
+            }
+
+            int add(String name) {
+                if (name == null) {
+                    return 0;
+                }
+                return ids.computeIfAbsent(name, key -> {
+                    names.add(key);
+                    return names.size() - 1;
+                });
+            }
+
+            Dictionary build() {
+                return new Dictionary(names.toArray(new String[0]), ids);
+            }
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.demo.util;
+
+import com.example.demo.model.Expense;
+import com.example.demo.model.ExportFormat;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+// Writes expenses row by row so memory use does not depend on how many rows are exported
+@Component
+public class ExpenseExportWriter {
+
+    public static final String[] CSV_HEADER = {
+        "id", "item", "cost", "expense_date", "category", "description",
+        "payment_method", "location", "created_at", "updated_at"
+    };
+
+    private final ObjectMapper objectMapper;
+    // Flushing after every row would turn each line into its own network write
+    private final ObjectWriter rowWriter;
+
+    public ExpenseExportWriter(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        this.rowWriter = objectMapper.writerFor(Expense.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    // afterRow is called once each row has been written, e.g. to detach it from the persistence context
+    public long write(Stream<Expense> expenses, ExportFormat format, OutputStream out,
+                      Consumer<Expense> afterRow) throws IOException {
+        return switch (format) {
+            case NDJSON -> writeNdjson(expenses.iterator(), out, afterRow);
+            case CSV -> writeCsv(expenses.iterator(), out, afterRow);
+        };
+    }
+
+    private long writeNdjson(Iterator<Expense> expenses, OutputStream out, Consumer<Expense> afterRow) throws IOException {
+        long rows = 0;
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        // Rows are separated by the newline written below, not Jackson's default space
+        generator.setRootValueSeparator(null);
+        while (expenses.hasNext()) {
+            Expense expense = expenses.next();
+            rowWriter.writeValue(generator, expense);
+            generator.writeRaw('\n');
+            afterRow.accept(expense);
+            rows++;
+        }
+        generator.close();
+        return rows;
+    }
+
+    private long writeCsv(Iterator<Expense> expenses, OutputStream out, Consumer<Expense> afterRow) throws IOException {
+        long rows = 0;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        writeCsvLine(writer, (Object[]) CSV_HEADER);
+        while (expenses.hasNext()) {
+            Expense e = expenses.next();
+            writeCsvLine(writer, e.getId(), e.getItem(), e.getCost(), e.getExpenseDate(), e.getCategory(),
+                    e.getDescription(), e.getPaymentMethod(), e.getLocation(), e.getCreatedAt(), e.getUpdatedAt());
+            afterRow.accept(e);
+            rows++;
+        }
+        writer.flush();
+        return rows;
+    }
+
+    private static void writeCsvLine(Writer writer, Object... values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            if (values[i] != null) {
+                writeCsvField(writer, values[i].toString());
+            }
+        }
+        writer.write("\r\n");
+    }
+
+    // RFC 4180 quoting: fields containing a delimiter, quote or line break are quoted
+    private static void writeCsvField(Writer writer, String value) throws IOException {
+        boolean quote = value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0;
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
@@ -1,58 +1,145 @@
 package com.example.demo.util;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class JwtUtil {
     
-    @Value("${JWT_SECRET_KEY}")
-    private String secretKey;
+    public static final String USER_ID_CLAIM = "uid";
     
-    @Value("${JWT_EXPIRATION_TIME}")
-    private long expirationTime;
+    private final long expirationTime;
+    private final SecretKey key;
+    // JwtParser is immutable and thread-safe, so one instance serves every request
+    private final JwtParser parser;
+    // Claims of tokens that already passed verification, keyed by SHA-256 of the token.
+    // Entries expire at the token's own exp claim so an expired token is never served from here.
+    private final Cache<String, Claims> verifiedTokens;
+    // jwt.parse covers every parseClaims call, cache hits included; jwt.verify only the signature checks
+    private final Timer parseTimer;
+    private final Timer verifyTimer;
     
-    private SecretKey key;
-    
-    private SecretKey getKey() {
-        if (key == null) {
-            key = Keys.hmacShaKeyFor(secretKey.getBytes());
-        }
-        return key;
+    public JwtUtil(@Value("${JWT_SECRET_KEY}") String secretKey,
+                   @Value("${JWT_EXPIRATION_TIME}") long expirationTime,
+                   @Value("${JWT_CACHE_SIZE:10000}") long cacheSize,
+                   MeterRegistry meterRegistry) {
+        this.expirationTime = expirationTime;
+        this.key = Keys.hmacShaKeyFor(secretKey.getBytes());
+        this.parser = Jwts.parserBuilder()
+                .setSigningKey(key)
+                .build();
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfter(new ExpireAtTokenExpiry())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, verifiedTokens, "jwt.verifiedTokens");
+        this.parseTimer = Timer.builder("jwt.parse").register(meterRegistry);
+        this.verifyTimer = Timer.builder("jwt.verify").register(meterRegistry);
     }
     
-    public String generateToken(String email) {
+    public String generateToken(String email, Long userId) {
         return Jwts.builder()
                 .setSubject(email)
+                .claim(USER_ID_CLAIM, userId)
                 .setIssuedAt(new Date())
                 .setExpiration(new Date(System.currentTimeMillis() + expirationTime))
-                .signWith(getKey(), SignatureAlgorithm.HS256)
+                .signWith(key, SignatureAlgorithm.HS256)
                 .compact();
     }
     
+    // Verifies the signature and expiry and returns the claims; throws JwtException if invalid.
+    // Repeat calls with the same token are served from the verified-token cache.
+    // The returned claims are shared between requests and must not be modified.
+    public Claims parseClaims(String token) {
+        if (token == null || token.isEmpty()) {
+            throw new IllegalArgumentException("JWT token is empty");
+        }
+        return parseTimer.record(() -> {
+            String digest = digest(token);
+            Claims claims = verifiedTokens.getIfPresent(digest);
+            if (claims == null) {
+                // Only successfully verified tokens are cached; invalid ones throw before this point
+                claims = verifyTimer.record(() -> parser.parseClaimsJws(token).getBody());
+                verifiedTokens.put(digest, claims);
+            }
+            return claims;
+        });
+    }
+    
+    // Null for tokens issued before the user id claim was added
+    public Long extractUserId(Claims claims) {
+        Object userId = claims.get(USER_ID_CLAIM);
+        return userId instanceof Number number ? number.longValue() : null;
+    }
+    
     public String extractEmail(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody()
-                .getSubject();
+        return parseClaims(token).getSubject();
     }
     
     public boolean validateToken(String token) {
         try {
-            Jwts.parserBuilder()
-                    .setSigningKey(getKey())
-                    .build()
-                    .parseClaimsJws(token);
+            parseClaims(token);
             return true;
         } catch (JwtException | IllegalArgumentException e) {
             return false;
         }
     }
-} 
\ No newline at end of file
+    
+    public CacheStats getTokenCacheStats() {
+        return verifiedTokens.stats();
+    }
+    
+    public long getTokenCacheSize() {
+        return verifiedTokens.estimatedSize();
+    }
+    
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+    
+    private static class ExpireAtTokenExpiry implements Expiry<String, Claims> {
+        
+        @Override
+        public long expireAfterCreate(String digest, Claims claims, long currentTime) {
+            Date expiration = claims.getExpiration();
+            if (expiration == null) {
+                return 0;
+            }
+            long remainingMillis = expiration.getTime() - System.currentTimeMillis();
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(0, remainingMillis));
+        }
+        
+        @Override
+        public long expireAfterUpdate(String digest, Claims claims, long currentTime, long currentDuration) {
+            return expireAfterCreate(digest, claims, currentTime);
+        }
+        
+        @Override
+        public long expireAfterRead(String digest, Claims claims, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
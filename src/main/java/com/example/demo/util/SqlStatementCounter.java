@@ -0,0 +1,60 @@
+package com.example.demo.util;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.stereotype.Component;
+
+// Counts the SQL statements Hibernate prepares and the entities it loads on the current thread while
+// a scope is open. SqlStatementBudgetFilter opens one per API request; tests can open their own:
+//   try (SqlStatementCounter.Scope scope = counter.open()) {
+//       expenseService.getExpenseByIdAndUserId(id, userId);
+//       assertEquals(1, scope.getStatements());
+//   }
+// JdbcTemplate and other plain JDBC access bypass Hibernate and are not counted.
+@Component
+public class SqlStatementCounter implements StatementInspector {
+
+    private final ThreadLocal<Scope> current = new ThreadLocal<>();
+
+    public Scope open() {
+        Scope scope = new Scope(current.get());
+        current.set(scope);
+        return scope;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        for (Scope scope = current.get(); scope != null; scope = scope.parent) {
+            scope.statements++;
+        }
+        return sql;
+    }
+
+    public void entityLoaded() {
+        for (Scope scope = current.get(); scope != null; scope = scope.parent) {
+            scope.entitiesLoaded++;
+        }
+    }
+
+    // Scopes nest; statements count towards every open scope on the thread
+    public class Scope implements AutoCloseable {
+        private final Scope parent;
+        private int statements;
+        private int entitiesLoaded;
+
+        private Scope(Scope parent) {
+            this.parent = parent;
+        }
+
+        public int getStatements() { return statements; }
+        public int getEntitiesLoaded() { return entitiesLoaded; }
+
+        @Override
+        public void close() {
+            if (parent != null) {
+                current.set(parent);
+            } else {
+                current.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+-- V10__Partition_expenses_by_year.sql
+
+-- expenses becomes a table range-partitioned by year of expense_date (expenses_yYYYY). Date-range
+-- reads and totals only touch the partitions in range, and old years can be detached without a
+-- bulk DELETE. The yearly partitions are contiguous; dates before the first one go to expenses_past
+-- and dates after the last one to expenses_future. ExpensePartitionMaintenance splits upcoming years
+-- out of expenses_future ahead of time.
+--
+-- Range catch-alls are used instead of a DEFAULT partition: with a default partition PostgreSQL
+-- cannot read the partitions one after another in expense_date order, so keyset pages and exports
+-- would need a Merge Append or a sort instead of an ordered Append.
+
+ALTER TABLE expenses RENAME TO expenses_unpartitioned;
+ALTER TABLE expenses_unpartitioned RENAME CONSTRAINT expenses_pkey TO expenses_unpartitioned_pkey;
+DROP INDEX idx_expenses_user_date;
+DROP INDEX idx_expenses_user_category_date;
+DROP INDEX idx_expenses_user_payment_date;
+DROP INDEX idx_expenses_search_trgm;
+
+-- The sequence would otherwise be dropped together with the old table
+ALTER SEQUENCE expenses_id_seq OWNED BY NONE;
+
+CREATE TABLE expenses (
+    id BIGINT NOT NULL DEFAULT nextval('expenses_id_seq'),
+    user_id BIGINT NOT NULL,
+    item VARCHAR(255) NOT NULL,
+    cost DECIMAL(10,2) NOT NULL,
+    expense_date DATE NOT NULL,
+    category VARCHAR(100),
+    description TEXT,
+    payment_method VARCHAR(50),
+    location VARCHAR(255),
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    version BIGINT NOT NULL DEFAULT 0,
+    -- A partitioned table's primary key must contain the partition key; ids stay unique through the sequence
+    PRIMARY KEY (id, expense_date),
+    FOREIGN KEY (user_id) REFERENCES login(id) ON DELETE CASCADE
+) PARTITION BY RANGE (expense_date);
+
+ALTER SEQUENCE expenses_id_seq OWNED BY expenses.id;
+
+-- Yearly partitions from the oldest year with expenses (but at most ten years back) through next year
+DO $$
+DECLARE
+    current_year INT := EXTRACT(YEAR FROM CURRENT_DATE);
+    first_year INT := GREATEST(LEAST(COALESCE(EXTRACT(YEAR FROM (SELECT min(expense_date) FROM expenses_unpartitioned))::INT,
+                                              current_year), current_year), current_year - 10);
+    partition_year INT;
+BEGIN
+    EXECUTE format('CREATE TABLE expenses_past PARTITION OF expenses FOR VALUES FROM (MINVALUE) TO (%L)',
+                   make_date(first_year, 1, 1));
+    FOR partition_year IN first_year .. current_year + 1 LOOP
+        EXECUTE format('CREATE TABLE %I PARTITION OF expenses FOR VALUES FROM (%L) TO (%L)',
+                       'expenses_y' || partition_year, make_date(partition_year, 1, 1), make_date(partition_year + 1, 1, 1));
+    END LOOP;
+    EXECUTE format('CREATE TABLE expenses_future PARTITION OF expenses FOR VALUES FROM (%L) TO (MAXVALUE)',
+                   make_date(current_year + 2, 1, 1));
+END $$;
+
+INSERT INTO expenses (id, user_id, item, cost, expense_date, category, description, payment_method,
+                      location, created_at, updated_at, version)
+SELECT id, user_id, item, cost, expense_date, category, description, payment_method,
+       location, created_at, updated_at, version
+FROM expenses_unpartitioned;
+
+DROP TABLE expenses_unpartitioned;
+
+-- Indexes on the parent are created on every partition, including ones attached later
+CREATE INDEX idx_expenses_user_date ON expenses (user_id, expense_date DESC, id DESC);
+CREATE INDEX idx_expenses_user_category_date ON expenses (user_id, category, expense_date DESC, id DESC);
+CREATE INDEX idx_expenses_user_payment_date ON expenses (user_id, payment_method, expense_date DESC, id DESC);
+-- The expression must stay identical to ExpenseRepositoryCustomImpl.SEARCH_TEXT for the index to be used
+CREATE INDEX idx_expenses_search_trgm ON expenses
+    USING gin ((item || ' ' || coalesce(description, '')) gin_trgm_ops);
+
+ANALYZE expenses;
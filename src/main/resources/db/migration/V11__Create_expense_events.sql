@@ -0,0 +1,20 @@
+-- V11__Create_expense_events.sql
+
+-- Transactional outbox for GET /api/expenses/stream. Every expense write inserts one row here in the
+-- same statement that bumps user_data_versions, so an event exists exactly when its write committed
+-- and its version is the user's data version after that write. The bump holds the user's
+-- user_data_versions row lock until commit, so a user's versions commit in order and without gaps,
+-- and the version doubles as the SSE event id clients resume from (Last-Event-ID).
+-- ExpenseChangeFeed deletes rows older than EVENT_RETENTION_HOURS.
+CREATE TABLE expense_events (
+    user_id BIGINT NOT NULL,
+    version BIGINT NOT NULL,
+    type VARCHAR(16) NOT NULL,
+    -- json rather than jsonb: sent to clients as stored, without re-serializing
+    payload JSON NOT NULL,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (user_id, version),
+    FOREIGN KEY (user_id) REFERENCES login(id) ON DELETE CASCADE
+);
+
+CREATE INDEX idx_expense_events_created_at ON expense_events (created_at);
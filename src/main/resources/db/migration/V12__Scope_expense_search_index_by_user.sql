@@ -0,0 +1,13 @@
+-- V12__Scope_expense_search_index_by_user.sql
+
+-- Search always filters on user_id, but idx_expenses_search_trgm held only the text, so each trigram's
+-- posting list covered every user's rows and a lookup read (and rechecked) other tenants' matches.
+-- btree_gin lets user_id be a GIN key column alongside the trigrams, so a lookup intersects the
+-- user's entries with the query's trigrams inside the index.
+CREATE EXTENSION IF NOT EXISTS btree_gin;
+
+DROP INDEX idx_expenses_search_trgm;
+
+-- The expression must stay identical to ExpenseRepositoryCustomImpl.SEARCH_TEXT for the index to be used
+CREATE INDEX idx_expenses_user_search_trgm ON expenses
+    USING gin (user_id, (item || ' ' || coalesce(description, '')) gin_trgm_ops);
@@ -0,0 +1,8 @@
+-- V5__Pooled_expense_id_sequence.sql
+
+-- Expense ids are now allocated by Hibernate's pooled optimizer in blocks of 50
+-- (see Expense.id). Unlike the IDENTITY column default, this lets Hibernate
+-- assign ids before the INSERT and batch the statements.
+-- The column default is kept: each nextval still returns a value no pooled
+-- block has claimed, so plain SQL inserts remain safe.
+ALTER SEQUENCE expenses_id_seq INCREMENT BY 50;
@@ -0,0 +1,25 @@
+-- V6__Create_expense_monthly_rollups.sql
+
+-- Per-user monthly totals maintained by ExpenseService in the same transaction as
+-- every expense write. NULL category / payment_method are stored as ''.
+CREATE TABLE expense_monthly_rollups (
+    user_id BIGINT NOT NULL,
+    year_month DATE NOT NULL,
+    category VARCHAR(100) NOT NULL DEFAULT '',
+    payment_method VARCHAR(50) NOT NULL DEFAULT '',
+    total_cost DECIMAL(19,2) NOT NULL DEFAULT 0,
+    expense_count BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (user_id, year_month, category, payment_method),
+    FOREIGN KEY (user_id) REFERENCES login(id) ON DELETE CASCADE
+);
+
+-- Backfill from existing expenses; year_month is the first day of the month
+INSERT INTO expense_monthly_rollups (user_id, year_month, category, payment_method, total_cost, expense_count)
+SELECT user_id,
+       CAST(date_trunc('month', expense_date) AS DATE),
+       COALESCE(category, ''),
+       COALESCE(payment_method, ''),
+       SUM(cost),
+       COUNT(*)
+FROM expenses
+GROUP BY 1, 2, 3, 4;
@@ -0,0 +1,10 @@
+-- V7__Add_expense_search_index.sql
+
+-- Trigram index over item and description for GET /api/expenses/search.
+-- It serves both the fuzzy word-similarity operator (%>) and ILIKE '%...%' substring matches,
+-- neither of which a B-tree index can answer.
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+-- The expression must stay identical to ExpenseRepositoryCustomImpl.SEARCH_TEXT for the index to be used
+CREATE INDEX idx_expenses_search_trgm ON expenses
+    USING gin ((item || ' ' || coalesce(description, '')) gin_trgm_ops);
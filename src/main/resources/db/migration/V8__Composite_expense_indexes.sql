@@ -0,0 +1,14 @@
+-- V8__Composite_expense_indexes.sql
+
+-- Every finder filters on user_id (plus optionally category or payment_method) and pages by
+-- (expense_date DESC, id DESC). These indexes return rows already in that order, so keyset pages
+-- are read without a sort and stop after LIMIT rows.
+CREATE INDEX idx_expenses_user_date ON expenses (user_id, expense_date DESC, id DESC);
+CREATE INDEX idx_expenses_user_category_date ON expenses (user_id, category, expense_date DESC, id DESC);
+CREATE INDEX idx_expenses_user_payment_date ON expenses (user_id, payment_method, expense_date DESC, id DESC);
+
+-- Superseded: user_id is the leading column of the indexes above (which also serve the
+-- ON DELETE CASCADE lookups), and no query filters on expense_date or category without user_id
+DROP INDEX idx_expenses_user_id;
+DROP INDEX idx_expenses_date;
+DROP INDEX idx_expenses_category;
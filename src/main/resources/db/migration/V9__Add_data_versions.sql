@@ -0,0 +1,13 @@
+-- V9__Add_data_versions.sql
+
+-- One row per user, bumped in the same transaction as every expense write.
+-- Reads answer If-None-Match from this row alone (DataVersionInterceptor); no Last-Modified is sent.
+CREATE TABLE user_data_versions (
+    user_id BIGINT PRIMARY KEY,
+    version BIGINT NOT NULL,
+    modified_at TIMESTAMP WITH TIME ZONE NOT NULL,
+    FOREIGN KEY (user_id) REFERENCES login(id) ON DELETE CASCADE
+);
+
+-- Optimistic locking column for Expense (@Version); compared against If-Match on updates and deletes
+ALTER TABLE expenses ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
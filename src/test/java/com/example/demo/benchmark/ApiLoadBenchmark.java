@@ -0,0 +1,438 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.service.ExpenseRollupService;
+import com.example.demo.service.PasswordHasher;
+import com.example.demo.util.JwtUtil;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// End-to-end load test: seeds load.users users with load.expenses expenses each, then drives every
+// ExpenseController and LoginController route over HTTP with a weighted mix from load.clients
+// concurrent clients for load.seconds. Prints throughput and p50/p95/p99 per route, writes them to
+// target/loadtest-results.json and fails when a route's p95 or p99 is more than load.threshold
+// (default 50%) above the checked-in baseline, when any request fails, or when a route has too few
+// requests (load.minSamples) in the run or the baseline for its percentiles to be compared.
+//   TEST_DB_URL=jdbc:postgresql://localhost:5432/demo_test mvn test -Dtest=ApiLoadBenchmark
+// load.mix overrides route weights, e.g. -Dload.mix=list=50,login=0 (0 disables a route).
+// To accept new numbers, copy target/loadtest-results.json over src/test/resources/loadtest/baseline.json.
+// Baselines are only comparable on the machine and settings they were recorded with.
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("it")
+@EnabledIfEnvironmentVariable(named = "TEST_DB_URL", matches = ".+")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ApiLoadBenchmark {
+
+	private static final int USERS = Integer.getInteger("load.users", 20);
+	private static final int EXPENSES = Integer.getInteger("load.expenses", 1000);
+	private static final int CLIENTS = Integer.getInteger("load.clients", 16);
+	// Long enough that the weight-1 routes (about 1% of requests each) reach MIN_SAMPLES
+	private static final int SECONDS = Integer.getInteger("load.seconds", 240);
+	private static final int WARMUP_SECONDS = Integer.getInteger("load.warmupSeconds", 5);
+	private static final double THRESHOLD = Double.parseDouble(System.getProperty("load.threshold", "0.5"));
+	// Absolute slack so sub-millisecond routes do not fail on scheduler noise
+	private static final double SLACK_MILLIS = 2.0;
+	// Below this many requests a route's p99 is just its slowest request, so it cannot be compared
+	private static final int MIN_SAMPLES = Integer.getInteger("load.minSamples", 100);
+	private static final Path BASELINE = Path.of(System.getProperty("load.baseline",
+			"src/test/resources/loadtest/baseline.json"));
+	private static final Path RESULTS = Path.of("target/loadtest-results.json");
+
+	private static final String PASSWORD = "load-test-password";
+	private static final String[] ITEMS = {"Coffee beans", "Bus ticket", "Lunch", "Cinema", "Rent", "Fuel"};
+	private static final String[] CATEGORIES = {"Groceries", "Transport", "Dining", "Entertainment", "Housing", "Car"};
+	private static final String[] PAYMENT_METHODS = {"Card", "Cash", "Transfer"};
+
+	@LocalServerPort
+	private int port;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private JwtUtil jwtUtil;
+
+	@Autowired
+	private PasswordHasher passwordHasher;
+
+	@Autowired
+	private ExpenseRollupService rollupService;
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+	private final String runId = UUID.randomUUID().toString().substring(0, 8);
+	private final List<User> users = new ArrayList<>();
+
+	private record User(long id, String email, String token, List<Long> expenseIds) {
+	}
+
+	@FunctionalInterface
+	private interface RequestFactory {
+		HttpRequest create(User user, ThreadLocalRandom random) throws Exception;
+	}
+
+	private record Route(String name, int weight, RequestFactory factory) {
+	}
+
+	@BeforeAll
+	void seed() {
+		// One hash shared by every seeded user keeps seeding fast at any user count
+		String hash = passwordHasher.encodeNow(PASSWORD);
+		List<Long> ids = jdbcTemplate.queryForList("""
+				INSERT INTO login (first_name, last_name, email, password)
+				SELECT 'Load', 'User ' || n, 'load-' || ? || '-' || n || '@example.com', ?
+				FROM generate_series(1, ?) AS n
+				RETURNING id
+				""", Long.class, runId, hash, USERS);
+		jdbcTemplate.update("""
+				INSERT INTO expenses (user_id, item, cost, expense_date, category, description, payment_method)
+				SELECT u.id, (?::text[])[n % 6 + 1] || ' ' || n, (n % 10000 + 1) / 100.0, DATE '2024-01-01' + (n % 365),
+				       (?::text[])[n % 6 + 1], 'entry ' || n, (?::text[])[n % 3 + 1]
+				FROM unnest(?::bigint[]) AS u(id) CROSS JOIN generate_series(1, ?) AS n
+				""", ITEMS, CATEGORIES, PAYMENT_METHODS, ids.toArray(Long[]::new), EXPENSES);
+		jdbcTemplate.execute("ANALYZE expenses");
+		for (Long id : ids) {
+			rollupService.rebuild(id);
+			String email = jdbcTemplate.queryForObject("SELECT email FROM login WHERE id = ?", String.class, id);
+			List<Long> expenseIds = jdbcTemplate.queryForList(
+					"SELECT id FROM expenses WHERE user_id = ? ORDER BY id LIMIT 200", Long.class, id);
+			users.add(new User(id, email, jwtUtil.generateToken(email, id), expenseIds));
+		}
+	}
+
+	@AfterAll
+	void deleteUsers() {
+		// Expenses, rollups and data versions go with ON DELETE CASCADE
+		jdbcTemplate.update("DELETE FROM login WHERE email LIKE ?", "load-" + runId + "-%");
+	}
+
+	@Test
+	void routesStayWithinBaseline() throws Exception {
+		List<Route> routes = applyMix(routes());
+		run(routes, WARMUP_SECONDS);
+		Map<String, List<Long>> latencies = new HashMap<>();
+		Map<String, Integer> failures = new HashMap<>();
+		long total = run(routes, SECONDS, latencies, failures);
+
+		Map<String, Object> results = new LinkedHashMap<>();
+		results.put("settings", settings());
+		results.put("throughput", round(total / (double) SECONDS));
+		Map<String, Object> routeResults = new LinkedHashMap<>();
+		System.out.printf("%-24s %8s %9s %9s %9s %9s %6s%n", "route", "requests", "req/s", "p50 ms", "p95 ms", "p99 ms", "errors");
+		for (Route route : routes) {
+			long[] sorted = latencies.getOrDefault(route.name(), List.of()).stream().mapToLong(Long::longValue).sorted().toArray();
+			if (sorted.length == 0) {
+				continue;
+			}
+			Map<String, Object> stats = new LinkedHashMap<>();
+			stats.put("requests", sorted.length);
+			stats.put("throughput", round(sorted.length / (double) SECONDS));
+			stats.put("p50", round(percentile(sorted, 0.50)));
+			stats.put("p95", round(percentile(sorted, 0.95)));
+			stats.put("p99", round(percentile(sorted, 0.99)));
+			routeResults.put(route.name(), stats);
+			System.out.printf("%-24s %8d %9.1f %9.2f %9.2f %9.2f %6d%n", route.name(), sorted.length,
+					stats.get("throughput"), stats.get("p50"), stats.get("p95"), stats.get("p99"),
+					errors(failures, route.name()));
+		}
+		results.put("routes", routeResults);
+		System.out.printf("total: %.1f req/s over %d s with %d clients%n", total / (double) SECONDS, SECONDS, CLIENTS);
+
+		Files.createDirectories(RESULTS.getParent());
+		objectMapper.writerWithDefaultPrettyPrinter().writeValue(RESULTS.toFile(), results);
+
+		assertTrue(failures.isEmpty(), "Failed requests per route: " + failures);
+		List<String> regressions = compareWithBaseline(total / (double) SECONDS, routeResults);
+		assertTrue(regressions.isEmpty(), "Latency regressions:\n" + String.join("\n", regressions));
+	}
+
+	private List<Route> routes() {
+		return List.of(
+				new Route("list", 15, (user, random) -> get(user, "/api/expenses?limit=50")),
+				new Route("list-compact", 5, (user, random) -> get(user, "/api/expenses?limit=50&view=compact")),
+				new Route("get", 10, (user, random) -> get(user, "/api/expenses/" + anyExpense(user, random))),
+				new Route("create", 5, (user, random) -> send(user, "POST", "/api/expenses", expenseJson(random))),
+				new Route("batch", 1, (user, random) -> send(user, "POST", "/api/expenses/batch", batchJson(random, 20))),
+				new Route("import", 1, (user, random) -> importCsv(user, random, 20)),
+				new Route("update", 3, (user, random) ->
+						send(user, "PUT", "/api/expenses/" + anyExpense(user, random), expenseJson(random))),
+				new Route("patch", 3, (user, random) -> send(user, "PATCH", "/api/expenses/" + anyExpense(user, random),
+						"{\"cost\": " + cost(random) + "}")),
+				new Route("delete", 2, (user, random) -> send(user, "DELETE", "/api/expenses/" + createExpense(user, random), null)),
+				new Route("category", 5, (user, random) -> get(user, "/api/expenses/category/" + pick(CATEGORIES, random))),
+				new Route("date-range", 5, (user, random) -> get(user, "/api/expenses/date-range?" + monthRange(random, "startDate", "endDate"))),
+				new Route("cost-range", 3, (user, random) -> get(user, "/api/expenses/cost-range?minCost=10&maxCost=20")),
+				new Route("payment-method", 3, (user, random) -> get(user, "/api/expenses/payment-method/" + pick(PAYMENT_METHODS, random))),
+				new Route("search", 5, (user, random) -> get(user, "/api/expenses/search?q=cofee")),
+				new Route("query", 5, (user, random) -> get(user, "/api/expenses/query?category=" + pick(CATEGORIES, random)
+						+ "&minCost=5&sort=cost&direction=desc")),
+				new Route("export", 1, (user, random) -> get(user, "/api/expenses/export?" + monthRange(random, "startDate", "endDate"))),
+				new Route("total", 2, (user, random) -> get(user, "/api/expenses/total")),
+				new Route("total-category", 2, (user, random) -> get(user, "/api/expenses/total/category/" + pick(CATEGORIES, random))),
+				new Route("total-date-range", 2, (user, random) -> get(user, "/api/expenses/total/date-range?startDate=2024-01-15&endDate=2024-06-10")),
+				new Route("total-monthly", 2, (user, random) -> get(user, "/api/expenses/total/monthly/2024/" + (random.nextInt(12) + 1))),
+				new Route("total-yearly", 2, (user, random) -> get(user, "/api/expenses/total/yearly/2024")),
+				new Route("summary", 3, (user, random) -> get(user, "/api/expenses/summary?groupBy=category,month")),
+				new Route("categories", 2, (user, random) -> get(user, "/api/expenses/categories")),
+				new Route("payment-methods", 2, (user, random) -> get(user, "/api/expenses/payment-methods")),
+				new Route("logins", 1, (user, random) -> get(user, "/api/logins")),
+				new Route("login-get", 2, (user, random) -> get(user, "/api/logins/" + user.id())),
+				new Route("login-create", 1, (user, random) -> send(user, "POST", "/api/logins", "{\"firstName\": \"Load\", "
+						+ "\"lastName\": \"New\", \"email\": \"load-" + runId + "-new-" + UUID.randomUUID() + "@example.com\", "
+						+ "\"password\": \"" + PASSWORD + "\"}")),
+				new Route("login-update", 1, (user, random) -> send(user, "PUT", "/api/logins/" + user.id(),
+						"{\"firstName\": \"Load\", \"lastName\": \"User " + random.nextInt(1000) + "\", \"email\": \"" + user.email() + "\"}")),
+				new Route("login", 2, (user, random) -> send(user, "POST", "/api/logins/login",
+						"{\"email\": \"" + user.email() + "\", \"password\": \"" + PASSWORD + "\"}")));
+	}
+
+	// Runs the mix for the given time and returns the number of requests sent
+	private long run(List<Route> routes, int seconds) throws Exception {
+		return run(routes, seconds, new HashMap<>(), new HashMap<>());
+	}
+
+	private long run(List<Route> routes, int seconds, Map<String, List<Long>> latencies,
+					 Map<String, Integer> failures) throws Exception {
+		int totalWeight = routes.stream().mapToInt(Route::weight).sum();
+		long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+		ExecutorService pool = Executors.newFixedThreadPool(CLIENTS);
+		try {
+			List<Future<Map<String, List<Long>>>> futures = new ArrayList<>();
+			for (int c = 0; c < CLIENTS; c++) {
+				User user = users.get(c % users.size());
+				futures.add(pool.submit(() -> {
+					ThreadLocalRandom random = ThreadLocalRandom.current();
+					Map<String, List<Long>> own = new HashMap<>();
+					while (System.nanoTime() < deadline) {
+						Route route = pickRoute(routes, totalWeight, random);
+						HttpRequest request = route.factory().create(user, random);
+						long start = System.nanoTime();
+						HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+						long micros = (System.nanoTime() - start) / 1_000;
+						if (response.statusCode() / 100 != 2) {
+							synchronized (failures) {
+								failures.merge(route.name() + " " + response.statusCode(), 1, Integer::sum);
+							}
+						}
+						own.computeIfAbsent(route.name(), name -> new ArrayList<>()).add(micros);
+					}
+					return own;
+				}));
+			}
+			long total = 0;
+			for (Future<Map<String, List<Long>>> future : futures) {
+				for (Map.Entry<String, List<Long>> entry : future.get().entrySet()) {
+					latencies.computeIfAbsent(entry.getKey(), name -> new ArrayList<>()).addAll(entry.getValue());
+					total += entry.getValue().size();
+				}
+			}
+			return total;
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	private List<String> compareWithBaseline(double throughput, Map<String, Object> routeResults) throws Exception {
+		if (!Files.exists(BASELINE)) {
+			System.out.println("No baseline at " + BASELINE + "; skipping comparison");
+			return List.of();
+		}
+		JsonNode baseline = objectMapper.readTree(BASELINE.toFile());
+		if (!baseline.path("settings").equals(objectMapper.valueToTree(settings()))) {
+			System.out.println("Baseline was recorded with settings " + baseline.path("settings") + "; skipping comparison");
+			return List.of();
+		}
+		List<String> regressions = new ArrayList<>();
+		double minThroughput = baseline.path("throughput").asDouble() * (1 - THRESHOLD);
+		if (throughput < minThroughput) {
+			regressions.add(String.format("throughput: %.1f req/s, baseline %.1f req/s (limit %.1f req/s)",
+					throughput, baseline.path("throughput").asDouble(), minThroughput));
+		}
+		baseline.path("routes").fieldNames().forEachRemaining(name -> {
+			if (!routeResults.containsKey(name)) {
+				regressions.add(name + ": in the baseline but not measured");
+			}
+		});
+		routeResults.forEach((name, value) -> {
+			JsonNode expected = baseline.path("routes").path(name);
+			@SuppressWarnings("unchecked")
+			Map<String, Object> actual = (Map<String, Object>) value;
+			int baselineRequests = expected.path("requests").asInt();
+			int requests = (Integer) actual.get("requests");
+			if (baselineRequests < MIN_SAMPLES || requests < MIN_SAMPLES) {
+				regressions.add(String.format("%s: %d requests, baseline %d; both need at least %d (raise load.seconds "
+						+ "or the route's weight and re-record the baseline)", name, requests, baselineRequests, MIN_SAMPLES));
+				return;
+			}
+			for (String metric : List.of("p95", "p99")) {
+				double limit = expected.path(metric).asDouble() * (1 + THRESHOLD) + SLACK_MILLIS;
+				double measured = (Double) actual.get(metric);
+				if (measured > limit) {
+					regressions.add(String.format("%s %s: %.2f ms, baseline %.2f ms (limit %.2f ms)",
+							name, metric, measured, expected.path(metric).asDouble(), limit));
+				}
+			}
+		});
+		return regressions;
+	}
+
+	// Settings that make two runs comparable; the mix is included because it changes contention
+	private Map<String, Object> settings() {
+		Map<String, Object> settings = new LinkedHashMap<>();
+		settings.put("users", USERS);
+		settings.put("expenses", EXPENSES);
+		settings.put("clients", CLIENTS);
+		settings.put("seconds", SECONDS);
+		settings.put("mix", System.getProperty("load.mix", ""));
+		return settings;
+	}
+
+	// Failures are keyed by route and status, e.g. "update 500"
+	private static int errors(Map<String, Integer> failures, String route) {
+		return failures.entrySet().stream()
+				.filter(entry -> entry.getKey().startsWith(route + " "))
+				.mapToInt(Map.Entry::getValue)
+				.sum();
+	}
+
+	private static List<Route> applyMix(List<Route> routes) {
+		Map<String, Integer> weights = new HashMap<>();
+		for (String entry : System.getProperty("load.mix", "").split(",")) {
+			if (!entry.isBlank()) {
+				String[] parts = entry.split("=");
+				weights.put(parts[0].trim(), Integer.parseInt(parts[1].trim()));
+			}
+		}
+		return routes.stream()
+				.map(route -> new Route(route.name(), weights.getOrDefault(route.name(), route.weight()), route.factory()))
+				.filter(route -> route.weight() > 0)
+				.toList();
+	}
+
+	private static Route pickRoute(List<Route> routes, int totalWeight, ThreadLocalRandom random) {
+		int ticket = random.nextInt(totalWeight);
+		for (Route route : routes) {
+			ticket -= route.weight();
+			if (ticket < 0) {
+				return route;
+			}
+		}
+		throw new IllegalStateException("Route weights changed during the run");
+	}
+
+	// Request builders
+	private HttpRequest get(User user, String path) {
+		return request(user, path).GET().build();
+	}
+
+	private HttpRequest send(User user, String method, String path, String json) {
+		HttpRequest.BodyPublisher body = json != null
+				? HttpRequest.BodyPublishers.ofString(json)
+				: HttpRequest.BodyPublishers.noBody();
+		return request(user, path).header("Content-Type", "application/json").method(method, body).build();
+	}
+
+	private HttpRequest importCsv(User user, ThreadLocalRandom random, int rows) {
+		String boundary = "load-" + random.nextLong();
+		StringBuilder body = new StringBuilder("--" + boundary + "\r\n"
+				+ "Content-Disposition: form-data; name=\"file\"; filename=\"expenses.csv\"\r\n"
+				+ "Content-Type: text/csv\r\n\r\n"
+				+ "item,cost,expense_date,category,payment_method\r\n");
+		for (int i = 0; i < rows; i++) {
+			body.append(pick(ITEMS, random)).append(',').append(cost(random)).append(',').append(date(random))
+					.append(',').append(pick(CATEGORIES, random)).append(',').append(pick(PAYMENT_METHODS, random)).append("\r\n");
+		}
+		body.append("--").append(boundary).append("--\r\n");
+		return request(user, "/api/expenses/import")
+				.header("Content-Type", "multipart/form-data; boundary=" + boundary)
+				.POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+				.build();
+	}
+
+	private HttpRequest.Builder request(User user, String path) {
+		return HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+				.header("Authorization", "Bearer " + user.token())
+				.timeout(Duration.ofSeconds(60));
+	}
+
+	// Creates the expense a delete request will remove; not measured
+	private long createExpense(User user, ThreadLocalRandom random) throws Exception {
+		HttpResponse<String> response = client.send(send(user, "POST", "/api/expenses", expenseJson(random)),
+				HttpResponse.BodyHandlers.ofString());
+		return objectMapper.readTree(response.body()).path("id").asLong();
+	}
+
+	private static String expenseJson(ThreadLocalRandom random) {
+		return "{\"item\": \"" + pick(ITEMS, random) + "\", \"cost\": " + cost(random) + ", \"expenseDate\": \""
+				+ date(random) + "\", \"category\": \"" + pick(CATEGORIES, random) + "\", \"paymentMethod\": \""
+				+ pick(PAYMENT_METHODS, random) + "\"}";
+	}
+
+	private static String batchJson(ThreadLocalRandom random, int size) {
+		List<String> expenses = new ArrayList<>();
+		for (int i = 0; i < size; i++) {
+			expenses.add(expenseJson(random));
+		}
+		return "[" + String.join(",", expenses) + "]";
+	}
+
+	private static long anyExpense(User user, ThreadLocalRandom random) {
+		return user.expenseIds().get(random.nextInt(user.expenseIds().size()));
+	}
+
+	private static String monthRange(ThreadLocalRandom random, String from, String to) {
+		LocalDate start = LocalDate.of(2024, random.nextInt(12) + 1, 1);
+		return from + "=" + start + "&" + to + "=" + start.plusMonths(1).minusDays(1);
+	}
+
+	private static LocalDate date(ThreadLocalRandom random) {
+		return LocalDate.of(2024, 1, 1).plusDays(random.nextInt(365));
+	}
+
+	private static String cost(ThreadLocalRandom random) {
+		return random.nextInt(1, 10_000) / 100 + "." + String.format("%02d", random.nextInt(100));
+	}
+
+	private static String pick(String[] values, ThreadLocalRandom random) {
+		return values[random.nextInt(values.length)];
+	}
+
+	private static double percentile(long[] sortedMicros, double fraction) {
+		int index = (int) Math.ceil(fraction * sortedMicros.length) - 1;
+		return sortedMicros[Math.max(index, 0)] / 1_000.0;
+	}
+
+	private static double round(double value) {
+		return Math.round(value * 100) / 100.0;
+	}
+}
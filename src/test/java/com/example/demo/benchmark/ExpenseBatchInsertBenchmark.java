@@ -0,0 +1,86 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.model.Expense;
+import com.example.demo.model.Login;
+import com.example.demo.repository.LoginRepository;
+import com.example.demo.service.ExpenseService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Compares rows/sec of POST /api/expenses (one transaction per row) with the batched path.
+// Not picked up by the default surefire includes; run explicitly against a local database:
+//   TEST_DB_URL=jdbc:postgresql://localhost:5432/demo_test mvn test -Dtest=ExpenseBatchInsertBenchmark
+@SpringBootTest
+@ActiveProfiles("it")
+@EnabledIfEnvironmentVariable(named = "TEST_DB_URL", matches = ".+")
+class ExpenseBatchInsertBenchmark {
+
+	private static final int ROWS = 5_000;
+
+	@Autowired
+	private ExpenseService expenseService;
+
+	@Autowired
+	private LoginRepository loginRepository;
+
+	private Login login;
+
+	@BeforeEach
+	void createUser() {
+		login = loginRepository.save(new Login(null, "Bench", "User",
+				"bench-" + UUID.randomUUID() + "@example.com", "not-a-real-hash", null));
+	}
+
+	@AfterEach
+	void deleteUser() {
+		// Expenses are removed by ON DELETE CASCADE
+		loginRepository.deleteById(login.getId());
+	}
+
+	@Test
+	void batchInsertIsFasterThanSingleRowInserts() {
+		long singleStart = System.nanoTime();
+		for (Expense expense : expenses(ROWS)) {
+			expense.setUserId(login.getId());
+			expenseService.createExpense(expense);
+		}
+		double singleRate = ROWS / seconds(singleStart);
+
+		long batchStart = System.nanoTime();
+		for (int offset = 0; offset < ROWS; offset += ExpenseService.MAX_BATCH_SIZE) {
+			int size = Math.min(ExpenseService.MAX_BATCH_SIZE, ROWS - offset);
+			assertEquals(size, expenseService.createExpenses(login.getId(), expenses(size)).created());
+		}
+		double batchRate = ROWS / seconds(batchStart);
+
+		System.out.printf("single-row: %.0f rows/s, batch: %.0f rows/s (%.1fx)%n",
+				singleRate, batchRate, batchRate / singleRate);
+		assertTrue(batchRate > singleRate);
+	}
+
+	private static List<Expense> expenses(int count) {
+		List<Expense> expenses = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			expenses.add(new Expense(null, "Item " + i, BigDecimal.valueOf(100 + i, 2),
+					LocalDate.of(2024, 1, 1).plusDays(i % 365), "Food", null, "Card", null));
+		}
+		return expenses;
+	}
+
+	private static double seconds(long startNanos) {
+		return (System.nanoTime() - startNanos) / 1_000_000_000.0;
+	}
+}
@@ -0,0 +1,119 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.model.ExpensePage;
+import com.example.demo.model.ExpenseSearchHit;
+import com.example.demo.model.Login;
+import com.example.demo.repository.LoginRepository;
+import com.example.demo.service.ExpenseService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Compares the trigram-indexed search with the LIKE '%...%' query it replaced, for one user with 1M
+// expenses among 200 other users sharing 1M more (override with -Dbench.rows, -Dbench.otherUsers and
+// -Dbench.otherRows). The other users' rows use the same words, so an index that is not scoped by user
+// would have to read and discard their matches. Run explicitly against a local database:
+//   TEST_DB_URL=jdbc:postgresql://localhost:5432/demo_test mvn test -Dtest=ExpenseSearchBenchmark
+@SpringBootTest
+@ActiveProfiles("it")
+@EnabledIfEnvironmentVariable(named = "TEST_DB_URL", matches = ".+")
+class ExpenseSearchBenchmark {
+
+	private static final int ROWS = Integer.getInteger("bench.rows", 1_000_000);
+	private static final int OTHER_USERS = Integer.getInteger("bench.otherUsers", 200);
+	private static final int OTHER_ROWS = Integer.getInteger("bench.otherRows", 1_000_000);
+	private static final int RUNS = 20;
+
+	// The query behind the old /search?itemName=...
+	private static final String LIKE_SQL = "SELECT * FROM expenses e WHERE e.user_id = ? "
+			+ "AND LOWER(e.item) LIKE LOWER(CONCAT('%', ?, '%')) ORDER BY e.expense_date DESC, e.id DESC LIMIT 51";
+
+	// Mostly filler words plus a rare item, so the selective query has few matches per user
+	private static final String SEED_SQL = """
+			INSERT INTO expenses (user_id, item, cost, expense_date, category, description, payment_method)
+			SELECT (?::bigint[])[abs(hashint4(n)) % array_length(?::bigint[], 1) + 1],
+			       CASE WHEN n % 10000 = 0 THEN 'Espresso machine descaler'
+			            ELSE (ARRAY['Groceries','Bus ticket','Lunch','Cinema','Rent','Fuel'])[n % 6 + 1] || ' ' || n END,
+			       (n % 10000) / 100.0, DATE '2020-01-01' + (n % 1800), 'Misc', 'entry ' || md5(n::text), 'Card'
+			FROM generate_series(1, ?) AS n
+			""";
+
+	@Autowired
+	private ExpenseService expenseService;
+
+	@Autowired
+	private LoginRepository loginRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	private final List<Login> logins = new ArrayList<>();
+	private Login login;
+
+	@BeforeEach
+	void createUsersWithExpenses() {
+		for (int i = 0; i <= OTHER_USERS; i++) {
+			logins.add(loginRepository.save(new Login(null, "Bench", "User",
+					"bench-" + UUID.randomUUID() + "@example.com", "not-a-real-hash", null)));
+		}
+		login = logins.get(0);
+		Long[] others = logins.subList(1, logins.size()).stream().map(Login::getId).toArray(Long[]::new);
+		Long[] self = {login.getId()};
+		jdbcTemplate.update(SEED_SQL, self, self, ROWS);
+		if (others.length > 0) {
+			jdbcTemplate.update(SEED_SQL, others, others, OTHER_ROWS);
+		}
+		jdbcTemplate.execute("ANALYZE expenses");
+	}
+
+	@AfterEach
+	void deleteUsers() {
+		// Expenses are removed by ON DELETE CASCADE
+		logins.forEach(each -> loginRepository.deleteById(each.getId()));
+	}
+
+	@Test
+	void trigramSearchIsFasterThanLikeScan() {
+		Long userId = login.getId();
+		String query = "espresso";
+
+		List<?> likeRows = jdbcTemplate.queryForList(LIKE_SQL, userId, query);
+		ExpensePage<ExpenseSearchHit> hits = expenseService.searchExpenses(userId, "espreso", null, 50);
+		assertFalse(likeRows.isEmpty());
+		assertFalse(hits.items().isEmpty());
+		assertTrue(hits.items().get(0).expense().getItem().startsWith("Espresso"));
+
+		long likeStart = System.nanoTime();
+		for (int i = 0; i < RUNS; i++) {
+			jdbcTemplate.queryForList(LIKE_SQL, userId, query);
+		}
+		double likeMillis = millis(likeStart) / RUNS;
+
+		long searchStart = System.nanoTime();
+		for (int i = 0; i < RUNS; i++) {
+			expenseService.searchExpenses(userId, "espreso", null, 50);
+		}
+		double searchMillis = millis(searchStart) / RUNS;
+
+		System.out.printf("%d rows: LIKE %.1f ms, trigram search %.1f ms (%.1fx)%n",
+				ROWS, likeMillis, searchMillis, likeMillis / searchMillis);
+		jdbcTemplate.queryForList("EXPLAIN " + LIKE_SQL, userId, query)
+				.forEach(row -> System.out.println(row.values().iterator().next()));
+		assertTrue(searchMillis < likeMillis);
+	}
+
+	private static double millis(long startNanos) {
+		return (System.nanoTime() - startNanos) / 1_000_000.0;
+	}
+}
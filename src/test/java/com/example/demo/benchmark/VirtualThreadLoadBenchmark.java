@@ -0,0 +1,142 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.model.Login;
+import com.example.demo.repository.LoginRepository;
+import com.example.demo.util.JwtUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Drives concurrent list requests over HTTP and reports throughput and p99 latency for the current
+// threading mode. Run it once per mode and compare the two lines it prints:
+//   TEST_DB_URL=... mvn test -Dtest=VirtualThreadLoadBenchmark
+//   TEST_DB_URL=... VIRTUAL_THREADS=true mvn -Pjava21 test -Dtest=VirtualThreadLoadBenchmark
+// bench.clients and bench.requests override the number of concurrent clients and total requests.
+// Requests beyond ConcurrencyLimitFilter's limit wait for a slot as long as the client does rather than
+// being shed with 503, so the latency printed includes that queueing.
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "REQUEST_QUEUE_TIMEOUT_MS=60000")
+@ActiveProfiles("it")
+@EnabledIfEnvironmentVariable(named = "TEST_DB_URL", matches = ".+")
+class VirtualThreadLoadBenchmark {
+
+	private static final int CLIENTS = Integer.getInteger("bench.clients", 200);
+	private static final int REQUESTS = Integer.getInteger("bench.requests", 10_000);
+
+	@LocalServerPort
+	private int port;
+
+	@Value("${spring.threads.virtual.enabled:false}")
+	private boolean virtualThreads;
+
+	@Autowired
+	private LoginRepository loginRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private JwtUtil jwtUtil;
+
+	private Login login;
+
+	@BeforeEach
+	void createUserWithExpenses() {
+		login = loginRepository.save(new Login(null, "Load", "User",
+				"load-" + UUID.randomUUID() + "@example.com", "not-a-real-hash", null));
+		jdbcTemplate.update("""
+				INSERT INTO expenses (user_id, item, cost, expense_date, category, description, payment_method)
+				SELECT ?, 'Item ' || n, (n % 10000) / 100.0, DATE '2024-01-01' + (n % 365), 'Misc', NULL, 'Card'
+				FROM generate_series(1, 2000) AS n
+				""", login.getId());
+	}
+
+	@AfterEach
+	void deleteUser() {
+		loginRepository.deleteById(login.getId());
+	}
+
+	@Test
+	void reportThroughputAndTailLatency() throws Exception {
+		String token = jwtUtil.generateToken(login.getEmail(), login.getId());
+		HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+		HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/expenses?limit=50"))
+				.header("Authorization", "Bearer " + token)
+				.timeout(Duration.ofSeconds(60))
+				.build();
+
+		// Warm up JIT, caches and the connection pool before measuring
+		runLoad(client, request, Math.min(CLIENTS, 50), 1_000);
+
+		long start = System.nanoTime();
+		Result result = runLoad(client, request, CLIENTS, REQUESTS);
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		long[] latencies = result.latenciesMicros();
+		Arrays.sort(latencies);
+		System.out.printf("%s threads, %d clients: %.0f req/s, p50 %.1f ms, p99 %.1f ms, %d non-200%n",
+				virtualThreads && Runtime.version().feature() >= 21 ? "virtual" : "platform", CLIENTS,
+				REQUESTS / seconds, percentile(latencies, 0.50), percentile(latencies, 0.99), result.failures());
+		assertEquals(0, result.failures());
+	}
+
+	// Each client thread sends its share of requests back to back
+	private static Result runLoad(HttpClient client, HttpRequest request, int clients, int requests) throws Exception {
+		long[] latencies = new long[requests];
+		int[] failures = new int[clients];
+		ExecutorService pool = Executors.newFixedThreadPool(clients);
+		try {
+			List<CompletableFuture<Void>> futures = new ArrayList<>();
+			for (int c = 0; c < clients; c++) {
+				int clientIndex = c;
+				futures.add(CompletableFuture.runAsync(() -> {
+					for (int i = clientIndex; i < requests; i += clients) {
+						long sent = System.nanoTime();
+						try {
+							HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+							if (response.statusCode() != 200) {
+								failures[clientIndex]++;
+							}
+						} catch (Exception e) {
+							failures[clientIndex]++;
+						}
+						latencies[i] = (System.nanoTime() - sent) / 1_000;
+					}
+				}, pool));
+			}
+			CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+		} finally {
+			pool.shutdown();
+		}
+		return new Result(latencies, Arrays.stream(failures).sum());
+	}
+
+	private static double percentile(long[] sortedMicros, double fraction) {
+		int index = (int) Math.ceil(fraction * sortedMicros.length) - 1;
+		return sortedMicros[Math.max(index, 0)] / 1_000.0;
+	}
+
+	private record Result(long[] latenciesMicros, int failures) {
+	}
+}
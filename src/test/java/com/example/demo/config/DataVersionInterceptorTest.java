@@ -0,0 +1,101 @@
+package com.example.demo.config;
+
+import com.example.demo.model.Expense;
+import com.example.demo.model.Login;
+import com.example.demo.repository.LoginRepository;
+import com.example.demo.service.ExpenseService;
+import com.example.demo.util.JwtUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDate;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Conditional GETs over a real connection: a current If-None-Match is answered with 304 before the
+// controller runs, and any write makes it stale. Skipped unless TEST_DB_URL is set:
+//   TEST_DB_URL=jdbc:postgresql://localhost:5432/demo_test mvn test -Dtest=DataVersionInterceptorTest
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("it")
+@EnabledIfEnvironmentVariable(named = "TEST_DB_URL", matches = ".+")
+class DataVersionInterceptorTest {
+
+	@LocalServerPort
+	private int port;
+
+	@Autowired
+	private ExpenseService expenseService;
+
+	@Autowired
+	private JwtUtil jwtUtil;
+
+	@Autowired
+	private LoginRepository loginRepository;
+
+	private final HttpClient client = HttpClient.newHttpClient();
+	private Login login;
+
+	@BeforeEach
+	void createUser() {
+		login = loginRepository.save(new Login(null, "Etag", "User",
+				"etag-" + UUID.randomUUID() + "@example.com", "not-a-real-hash", null));
+	}
+
+	@AfterEach
+	void deleteUser() {
+		loginRepository.deleteById(login.getId());
+	}
+
+	@Test
+	void matchingEtagIsNotModifiedUntilAWrite() throws Exception {
+		expenseService.createExpense(expense("Coffee"));
+		HttpResponse<String> first = get("/api/expenses", null);
+		assertEquals(200, first.statusCode());
+		String etag = first.headers().firstValue("ETag").orElseThrow();
+		assertTrue(first.headers().firstValue("Last-Modified").isEmpty());
+
+		HttpResponse<String> unchanged = get("/api/expenses", etag);
+		assertEquals(304, unchanged.statusCode());
+		assertEquals("", unchanged.body());
+
+		expenseService.createExpense(expense("Tea"));
+		HttpResponse<String> changed = get("/api/expenses", etag);
+		assertEquals(200, changed.statusCode());
+		assertNotEquals(etag, changed.headers().firstValue("ETag").orElseThrow());
+		assertTrue(changed.body().contains("Tea"));
+	}
+
+	@Test
+	void notModifiedIsAnsweredBeforeTheHandler() throws Exception {
+		String etag = get("/api/expenses", null).headers().firstValue("ETag").orElseThrow();
+
+		// The controller would answer 404 for an expense that does not exist
+		assertEquals(404, get("/api/expenses/-1", null).statusCode());
+		assertEquals(304, get("/api/expenses/-1", etag).statusCode());
+	}
+
+	private HttpResponse<String> get(String path, String ifNoneMatch) throws Exception {
+		HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+				.header("Authorization", "Bearer " + jwtUtil.generateToken(login.getEmail(), login.getId()));
+		if (ifNoneMatch != null) {
+			request.header("If-None-Match", ifNoneMatch);
+		}
+		return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+	}
+
+	private Expense expense(String item) {
+		return new Expense(login.getId(), item, new BigDecimal("3.50"), LocalDate.of(2025, 3, 1), "Food", null, "Card", null);
+	}
+}
@@ -0,0 +1,188 @@
+package com.example.demo.config;
+
+import com.example.demo.model.AuthenticatedUser;
+import com.example.demo.model.Expense;
+import com.example.demo.model.ExpenseView;
+import com.example.demo.model.Login;
+import com.example.demo.repository.LoginRepository;
+import com.example.demo.repository.UserDataVersionRepository;
+import com.example.demo.service.ExpenseService;
+import com.example.demo.service.ReadYourWritesWindow;
+import com.example.demo.service.UserCacheGenerations;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Routes against two local PostgreSQL servers: TEST_DB_URL as the primary and TEST_REPLICA_DB_URL as
+// the replica. They need not replicate; the test migrates the replica itself and tells the servers
+// apart by port. A second, unreachable replica checks ejection. For example:
+//   initdb -D /tmp/replica -U postgres --auth=trust && pg_ctl -D /tmp/replica -o "-p 5433" start
+//   TEST_DB_URL=jdbc:postgresql://localhost:5432/postgres TEST_REPLICA_DB_URL=jdbc:postgresql://localhost:5433/postgres \
+//     mvn test -Dtest=ReplicaRoutingTest
+@SpringBootTest(properties = {
+		"DB_REPLICA_URLS=${TEST_REPLICA_DB_URL},jdbc:postgresql://localhost:1/unreachable",
+		"READ_YOUR_WRITES_MS=60000",
+		"DB_REPLICA_CHECK_INTERVAL_MS=3600000"})
+@ActiveProfiles("it")
+@EnabledIfEnvironmentVariable(named = "TEST_DB_URL", matches = ".+")
+@EnabledIfEnvironmentVariable(named = "TEST_REPLICA_DB_URL", matches = ".+")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ReplicaRoutingTest {
+
+	private static final String PORT_SQL = "SELECT current_setting('port')";
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Autowired
+	private ReplicaDataSource replicaDataSource;
+
+	@Autowired
+	private ReadYourWritesWindow readYourWrites;
+
+	@Autowired
+	private ExpenseService expenseService;
+
+	@Autowired
+	private LoginRepository loginRepository;
+
+	@Autowired
+	private UserDataVersionRepository dataVersionRepository;
+
+	@Autowired
+	private UserCacheGenerations cacheGenerations;
+
+	private String primaryPort;
+	private String replicaPort;
+
+	@BeforeAll
+	void migrateReplica() {
+		String url = System.getenv("TEST_REPLICA_DB_URL");
+		String username = System.getenv().getOrDefault("TEST_DB_USERNAME", "postgres");
+		String password = System.getenv().getOrDefault("TEST_DB_PASS", "postgres");
+		Flyway.configure().dataSource(url, username, password).locations("classpath:db/migration").load().migrate();
+		primaryPort = jdbcTemplate.queryForObject(PORT_SQL, String.class);
+		replicaPort = new JdbcTemplate(new DriverManagerDataSource(url, username, password))
+				.queryForObject(PORT_SQL, String.class);
+		assertNotEquals(primaryPort, replicaPort, "Primary and replica must be different servers");
+	}
+
+	@AfterEach
+	void clearSecurityContext() {
+		SecurityContextHolder.clearContext();
+		RequestContextHolder.resetRequestAttributes();
+	}
+
+	@Test
+	void readOnlyTransactionsUseTheReplicaAndWritesThePrimary() {
+		for (int i = 0; i < 4; i++) {
+			assertEquals(replicaPort, port(true));
+			assertEquals(primaryPort, port(false));
+		}
+	}
+
+	@Test
+	void unreachableReplicaIsEjected() {
+		for (int i = 0; i < 4; i++) {
+			assertEquals(replicaPort, port(true));
+		}
+		List<ReplicaDataSource.Replica> replicas = replicaDataSource.getReplicas();
+		assertTrue(replicas.get(0).isAvailable());
+		assertFalse(replicas.get(1).isAvailable());
+	}
+
+	@Test
+	void recentWriterReadsFromThePrimary() {
+		Login login = loginRepository.save(new Login(null, "Replica", "User",
+				"replica-" + UUID.randomUUID() + "@example.com", "not-a-real-hash", null));
+		try {
+			expenseService.createExpense(new Expense(login.getId(), "Written on primary", new BigDecimal("5.00"),
+					LocalDate.of(2024, 5, 1), "Food", null, "Card", null));
+			assertTrue(readYourWrites.isRecentWriter(login.getId()));
+
+			// The replica does not replicate in this setup, so only the primary has the new row
+			assertTrue(expenseService.getAllExpensesByUserId(login.getId(), null, 10, ExpenseView.FULL).items().isEmpty());
+			// The version behind ETags is read from the primary whoever asks
+			assertTrue(dataVersionRepository.findById(login.getId()).isEmpty());
+			assertEquals(1, dataVersionRepository.findOnPrimary(login.getId()).orElseThrow().getVersion());
+			authenticateAs(login.getId());
+			assertEquals(1, expenseService.getAllExpensesByUserId(login.getId(), null, 10, ExpenseView.FULL).items().size());
+			assertEquals(primaryPort, port(true));
+
+			authenticateAs(-1L);
+			assertEquals(replicaPort, port(true));
+		} finally {
+			loginRepository.deleteById(login.getId());
+		}
+	}
+
+	// Written through another instance: this one's read-your-writes window knows nothing of it
+	@Test
+	void requestAtAVersionTheReplicaLacksReadsFromThePrimary() {
+		Login login = loginRepository.save(new Login(null, "Replica", "User",
+				"replica-" + UUID.randomUUID() + "@example.com", "not-a-real-hash", null));
+		try {
+			dataVersionRepository.touch(login.getId());
+			assertFalse(readYourWrites.isRecentWriter(login.getId()));
+			authenticateAs(login.getId());
+			assertEquals(replicaPort, port(true));
+
+			// As DataVersionInterceptor does at the start of a GET
+			RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+			assertEquals(1, cacheGenerations.currentForRequest(login.getId()));
+			assertEquals(primaryPort, port(true));
+
+			// A user the replica is not behind on still reads it
+			authenticateAs(-1L);
+			cacheGenerations.currentForRequest(-1L);
+			assertEquals(replicaPort, port(true));
+		} finally {
+			loginRepository.deleteById(login.getId());
+		}
+	}
+
+	@Test
+	void windowShorterThanTheAllowedLagIsRejected() {
+		String urls = "jdbc:postgresql://replica:5432/db";
+		assertThrows(IllegalStateException.class, () -> new ReadYourWritesWindow(urls, 10_000, 5_000, 100));
+		assertThrows(IllegalStateException.class, () -> new ReadYourWritesWindow(urls, 10_000, 0, 100));
+		// Without replicas there is nothing to lag behind
+		assertDoesNotThrow(() -> new ReadYourWritesWindow("", 10_000, 0, 100));
+	}
+
+	private String port(boolean readOnly) {
+		TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+		transaction.setReadOnly(readOnly);
+		return transaction.execute(status -> jdbcTemplate.queryForObject(PORT_SQL, String.class));
+	}
+
+	private static void authenticateAs(Long userId) {
+		SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+				new AuthenticatedUser(userId, "replica@example.com"), null, List.of()));
+	}
+}
@@ -0,0 +1,55 @@
+package com.example.demo.model;
+
+import com.example.demo.exception.InvalidCursorException;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpenseCursorTest {
+
+	@Test
+	void roundTrips() {
+		ExpenseCursor cursor = new ExpenseCursor(LocalDate.of(2025, 3, 1), 42L);
+		assertEquals(cursor, ExpenseCursor.decode(cursor.encode()));
+		assertEquals(ExpenseCursor.FIRST, ExpenseCursor.decode(ExpenseCursor.FIRST.encode()));
+	}
+
+	@Test
+	void missingCursorIsTheFirstPage() {
+		assertEquals(ExpenseCursor.FIRST, ExpenseCursor.decode(null));
+		assertEquals(ExpenseCursor.FIRST, ExpenseCursor.decode(""));
+	}
+
+	@Test
+	void rejectsMalformedCursors() {
+		for (String cursor : new String[] {"not base64!", token("2025-03-01"), token("2025-03-01:"), token(":42"),
+				token("2025-13-01:42"), token("2025-03-01:x"), token("2025-03-01:99999999999999999999")}) {
+			assertThrows(InvalidCursorException.class, () -> ExpenseCursor.decode(cursor), cursor);
+		}
+	}
+
+	@Test
+	void rejectsDatesTheDatabaseCannotCompare() {
+		for (String raw : new String[] {"-999999999-01-01:42", "0000-12-31:42", "+10000-01-01:42"}) {
+			assertThrows(InvalidCursorException.class, () -> ExpenseCursor.decode(token(raw)), raw);
+		}
+	}
+
+	@Test
+	void queryCursorRejectsDatesTheDatabaseCannotCompare() {
+		String cursor = token("expenseDate:DESC:42:-999999999-01-01");
+		assertThrows(InvalidCursorException.class,
+				() -> ExpenseQueryCursor.decode(cursor, ExpenseSort.EXPENSE_DATE, Sort.Direction.DESC));
+		assertEquals(LocalDate.of(2025, 3, 1), ExpenseQueryCursor.decode(token("expenseDate:DESC:42:2025-03-01"),
+				ExpenseSort.EXPENSE_DATE, Sort.Direction.DESC).value());
+	}
+
+	private static String token(String raw) {
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,310 @@
+package com.example.demo.repository;
+
+import com.example.demo.model.Expense;
+import com.example.demo.model.ExpenseCursor;
+import com.example.demo.model.ExpenseFilter;
+import com.example.demo.model.ExpenseSearchCursor;
+import com.example.demo.model.SummaryDimension;
+import com.example.demo.service.ExpensePartitionMaintenance;
+import com.example.demo.service.ExpenseService;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Runs each ExpenseRepository query, captures the SQL Hibernate sends and checks its generic plan
+// (the one a prepared statement ends up with) for sequential scans and sort steps.
+// Skipped unless TEST_DB_URL is set:
+//   TEST_DB_URL=jdbc:postgresql://localhost:5432/demo_test mvn test -Dtest=ExpenseQueryPlanTest
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+		+ "com.example.demo.repository.ExpenseQueryPlanTest$CapturingInspector")
+@ActiveProfiles("it")
+@EnabledIfEnvironmentVariable(named = "TEST_DB_URL", matches = ".+")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ExpenseQueryPlanTest {
+
+	private static final int USERS = 500;
+	private static final int EXPENSES_PER_USER = 200;
+
+	private static final Pattern SEQ_SCAN = Pattern.compile("Seq Scan on (\\w+)");
+	// Plan nodes only; "Sort Key:" detail lines belong to a sort or to the Merge Append that
+	// combines index-ordered partitions without sorting
+	private static final Pattern SORT = Pattern.compile("^\\s*(->\\s*)?(Incremental )?Sort\\b(?! Key)", Pattern.MULTILINE);
+	private static final Pattern SORT_ROWS = Pattern.compile("^\\s*(?:->\\s*)?(?:Incremental )?Sort\\s+\\(cost=\\S+ rows=(\\d+)", Pattern.MULTILINE);
+
+	@Autowired
+	private ExpenseRepository expenseRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private ExpensePartitionMaintenance partitionMaintenance;
+
+	private final String emailPrefix = "plan-" + UUID.randomUUID() + "-";
+	private Long userId;
+
+	// Enough users and rows that the planner's statistics resemble production rather than a toy table
+	@BeforeAll
+	void seed() {
+		// Yearly partitions for the seeded dates rather than one expenses_past holding them all
+		for (int year = partitionMaintenance.attachedYears().get(0) - 1; year >= 2020; year--) {
+			partitionMaintenance.createYear(year);
+		}
+		jdbcTemplate.update("INSERT INTO login (first_name, last_name, email, password) "
+				+ "SELECT 'Plan', 'User', ? || n || '@example.com', 'not-a-real-hash' FROM generate_series(1, ?) AS n",
+				emailPrefix, USERS);
+		jdbcTemplate.update("""
+				INSERT INTO expenses (user_id, item, cost, expense_date, category, description, payment_method)
+				SELECT l.id, 'Item ' || n, (n % 10000) / 100.0, DATE '2020-01-01' + (n * 7 % 1800),
+				       (ARRAY['Food','Rent','Travel','Fuel','Health','Fun','Gifts','Other'])[n % 8 + 1],
+				       'seeded row', (ARRAY['Card','Cash','Transfer'])[n % 3 + 1]
+				FROM login l CROSS JOIN generate_series(1, ?) AS n
+				WHERE l.email LIKE ? || '%'
+				""", EXPENSES_PER_USER, emailPrefix);
+		jdbcTemplate.execute("ANALYZE login");
+		jdbcTemplate.execute("ANALYZE expenses");
+		userId = jdbcTemplate.queryForObject("SELECT MIN(id) FROM login WHERE email LIKE ? || '%'", Long.class, emailPrefix);
+	}
+
+	@AfterAll
+	void deleteSeededUsers() {
+		// Expenses are removed by ON DELETE CASCADE
+		jdbcTemplate.update("DELETE FROM login WHERE email LIKE ? || '%'", emailPrefix);
+	}
+
+	@BeforeEach
+	void clearCapturedStatements() {
+		CapturingInspector.STATEMENTS.clear();
+	}
+
+	@Test
+	void pageByUser() {
+		ExpenseCursor after = ExpenseCursor.FIRST;
+		expenseRepository.findPageByUserId(userId, after.expenseDate(), after.id(), PageRequest.ofSize(51), Expense.class);
+		assertIndexOrderedPlan(lastSelect());
+	}
+
+	@Test
+	void pageByCategory() {
+		ExpenseCursor after = ExpenseCursor.FIRST;
+		expenseRepository.findPageByUserIdAndCategory(userId, "Food", after.expenseDate(), after.id(), PageRequest.ofSize(51), Expense.class);
+		assertIndexOrderedPlan(lastSelect());
+	}
+
+	@Test
+	void pageByPaymentMethod() {
+		ExpenseCursor after = ExpenseCursor.FIRST;
+		expenseRepository.findPageByUserIdAndPaymentMethod(userId, "Card", after.expenseDate(), after.id(), PageRequest.ofSize(51), Expense.class);
+		assertIndexOrderedPlan(lastSelect());
+	}
+
+	@Test
+	void pageByDateRange() {
+		ExpenseCursor after = ExpenseCursor.FIRST;
+		expenseRepository.findPageByUserIdAndDateRange(userId, LocalDate.of(2021, 1, 1), LocalDate.of(2022, 12, 31),
+				after.expenseDate(), after.id(), PageRequest.ofSize(51), Expense.class);
+		assertIndexOrderedPlan(lastSelect());
+	}
+
+	// The generic plan assumes a cost BETWEEN matches 0.5% of rows and sorts that handful; PostgreSQL only
+	// switches to it when it is cheaper than the custom plans, so the custom plan for a realistic range is checked.
+	// Across yearly partitions the planner also sorts when it expects fewer matches than one page, as
+	// collecting them from each partition costs less than walking every partition's index in order
+	@Test
+	void pageByCostRange() {
+		ExpenseCursor after = ExpenseCursor.FIRST;
+		BigDecimal minCost = new BigDecimal("10.00");
+		BigDecimal maxCost = new BigDecimal("20.00");
+		expenseRepository.findPageByUserIdAndCostRange(userId, minCost, maxCost,
+				after.expenseDate(), after.id(), PageRequest.ofSize(51), Expense.class);
+		String sql = lastSelect();
+		String plan = explain(sql, userId, minCost, maxCost, after.expenseDate(), after.expenseDate(), after.id(), 51);
+		assertNoSeqScanOverRows(sql, plan);
+		List<Long> sortedRows = SORT_ROWS.matcher(plan).results().map(sort -> Long.parseLong(sort.group(1))).toList();
+		assertEquals(SORT.matcher(plan).results().count(), sortedRows.size(), () -> "Unparsed sort in plan\n" + plan);
+		assertTrue(sortedRows.stream().allMatch(rows -> rows <= 51), () -> "Sort of more than one page in plan for " + sql + "\n" + plan);
+	}
+
+	// One page of ExpenseService.exportExpenses over the whole date range
+	@Test
+	void exportPage() {
+		ExpenseCursor after = ExpenseCursor.FIRST;
+		expenseRepository.findPageByUserIdAndDateRange(userId, ExpenseService.EARLIEST_DATE, ExpenseService.LATEST_DATE,
+				after.expenseDate(), after.id(), PageRequest.ofSize(ExpenseService.MAX_PAGE_SIZE), Expense.class);
+		assertIndexOrderedPlan(lastSelect());
+	}
+
+	@Test
+	void totalForDateRange() {
+		expenseRepository.getTotalCostByUserIdAndDateRange(userId, LocalDate.of(2021, 1, 1), LocalDate.of(2021, 1, 31));
+		assertNoSeqScan(lastSelect());
+	}
+
+	// Only the partition holding January 2021 is read, both for the bind values and in the generic plan
+	@Test
+	void dateRangeIsPrunedToItsPartition() {
+		LocalDate from = LocalDate.of(2021, 1, 1);
+		LocalDate to = LocalDate.of(2021, 1, 31);
+		expenseRepository.getTotalCostByUserIdAndDateRange(userId, from, to);
+		String sql = lastSelect();
+		String customPlan = explain(sql, userId, from, to);
+		assertEquals(List.of("expenses_y2021"), scannedPartitions(customPlan), () -> "Partitions scanned for " + sql + "\n" + customPlan);
+		String genericPlan = explain(sql);
+		assertTrue(genericPlan.contains("Subplans Removed"), () -> "No run-time pruning for " + sql + "\n" + genericPlan);
+	}
+
+	@Test
+	void distinctCategories() {
+		expenseRepository.findDistinctCategoriesByUserId(userId);
+		assertNoSeqScan(lastSelect());
+	}
+
+	@Test
+	void distinctPaymentMethods() {
+		expenseRepository.findDistinctPaymentMethodsByUserId(userId);
+		assertNoSeqScan(lastSelect());
+	}
+
+	@Test
+	void filterQueryByCategoryAndDate() {
+		ExpenseFilter filter = new ExpenseFilter("Food", null, null, null, LocalDate.of(2021, 1, 1), LocalDate.of(2021, 3, 31), null);
+		expenseRepository.findBy(ExpenseSpecifications.matching(userId, filter), query -> query
+				.sortBy(Sort.by(Sort.Direction.DESC, "expenseDate", "id")).limit(51).all());
+		assertIndexOrderedPlan(lastSelect());
+	}
+
+	@Test
+	void filterQueryByText() {
+		ExpenseFilter filter = new ExpenseFilter(null, null, null, null, null, null, "item 4");
+		expenseRepository.findBy(ExpenseSpecifications.matching(userId, filter), query -> query
+				.sortBy(Sort.by(Sort.Direction.DESC, "expenseDate", "id")).limit(51).all());
+		assertNoSeqScan(lastSelect());
+	}
+
+	// Ranking by similarity always needs a sort; only the index lookup is checked
+	@Test
+	void search() {
+		expenseRepository.search(userId, "item", ExpenseSearchCursor.FIRST, 51);
+		assertNoSeqScan(lastSelect());
+	}
+
+	// Grouping needs a sort or hash step by nature; only the index lookup is checked
+	@Test
+	void summary() {
+		expenseRepository.summarize(userId, LocalDate.of(1, 1, 1), LocalDate.of(9999, 12, 31),
+				List.of(SummaryDimension.CATEGORY, SummaryDimension.MONTH));
+		assertNoSeqScan(lastSelect());
+	}
+
+	// Without arguments the generic plan is checked; otherwise the custom plan for these bind values, in order
+	private void assertIndexOrderedPlan(String sql, Object... arguments) {
+		String plan = explain(sql, arguments);
+		assertNoSeqScanOverRows(sql, plan);
+		assertFalse(SORT.matcher(plan).find(), () -> "Sort step in plan for " + sql + "\n" + plan);
+	}
+
+	private void assertNoSeqScan(String sql) {
+		String plan = explain(sql);
+		assertNoSeqScanOverRows(sql, plan);
+	}
+
+	// An empty partition is always read sequentially, which costs nothing; any other sequential scan fails
+	private void assertNoSeqScanOverRows(String sql, String plan) {
+		Matcher matcher = SEQ_SCAN.matcher(plan);
+		while (matcher.find()) {
+			String relation = matcher.group(1);
+			Long rows = jdbcTemplate.queryForObject("SELECT count(*) FROM (SELECT 1 FROM " + relation + " LIMIT 1) r", Long.class);
+			assertEquals(0L, rows, () -> "Sequential scan on " + relation + " in plan for " + sql + "\n" + plan);
+		}
+	}
+
+	private static List<String> scannedPartitions(String plan) {
+		// Bitmap index scans name the index; their heap scan names the partition
+		return Pattern.compile("(?<!Bitmap Index) Scan(?: using \\w+)? on (\\w+)").matcher(plan).results()
+				.map(result -> result.group(1))
+				.distinct()
+				.toList();
+	}
+
+	// Prepares the statement on one connection and explains it. With no arguments the generic plan is
+	// forced, which does not depend on the NULLs passed to EXECUTE.
+	private String explain(String sql, Object... arguments) {
+		Matcher matcher = Pattern.compile("\\?").matcher(sql);
+		StringBuilder numbered = new StringBuilder();
+		int parameters = 0;
+		while (matcher.find()) {
+			matcher.appendReplacement(numbered, "\\$" + ++parameters);
+		}
+		String prepared = matcher.appendTail(numbered).toString();
+		List<String> values = arguments.length == 0
+				? Collections.nCopies(parameters, "NULL")
+				: Arrays.stream(arguments).map(value -> value instanceof Number ? value.toString() : "'" + value + "'").toList();
+		assertEquals(parameters, values.size(), "Bind values for " + sql);
+		String execute = "EXPLAIN EXECUTE plan_check" + (parameters == 0 ? "" : "(" + String.join(", ", values) + ")");
+		String planCacheMode = arguments.length == 0 ? "force_generic_plan" : "force_custom_plan";
+
+		return jdbcTemplate.execute((ConnectionCallback<String>) connection -> {
+			try (Statement statement = connection.createStatement()) {
+				statement.execute("SET plan_cache_mode = " + planCacheMode);
+				statement.execute("PREPARE plan_check AS " + prepared);
+				try {
+					StringBuilder plan = new StringBuilder();
+					try (ResultSet rows = statement.executeQuery(execute)) {
+						while (rows.next()) {
+							plan.append(rows.getString(1)).append('\n');
+						}
+					}
+					return plan.toString();
+				} finally {
+					statement.execute("DEALLOCATE plan_check");
+					statement.execute("RESET plan_cache_mode");
+				}
+			}
+		});
+	}
+
+	private static String lastSelect() {
+		List<String> selects = CapturingInspector.STATEMENTS.stream()
+				.filter(sql -> sql.stripLeading().regionMatches(true, 0, "select", 0, 6))
+				.toList();
+		assertFalse(selects.isEmpty(), "No SELECT was captured");
+		return selects.get(selects.size() - 1);
+	}
+
+	// Instantiated by Hibernate from the statement_inspector property
+	public static class CapturingInspector implements StatementInspector {
+
+		static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+		@Override
+		public String inspect(String sql) {
+			STATEMENTS.add(sql);
+			return sql;
+		}
+	}
+}
@@ -0,0 +1,50 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Login;
+import com.example.demo.repository.LoginRepository;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CustomUserDetailsServiceTest {
+
+	private static final String EMAIL = "user@example.com";
+
+	@Test
+	void cachesLoadedLogin() {
+		LoginRepository repository = Mockito.mock(LoginRepository.class);
+		when(repository.findByEmail(EMAIL)).thenReturn(Optional.of(login("old-hash")));
+		CustomUserDetailsService service = new CustomUserDetailsService(repository, 100, 300);
+
+		service.loadUserByUsername(EMAIL);
+		service.loadUserByUsername(EMAIL);
+
+		verify(repository, times(1)).findByEmail(EMAIL);
+	}
+
+	@Test
+	void loadRacingAnEvictionIsNotCached() {
+		LoginRepository repository = Mockito.mock(LoginRepository.class);
+		CustomUserDetailsService service = new CustomUserDetailsService(repository, 100, 300);
+		// The password change commits, and evicts, while the first load is between its read and its put
+		when(repository.findByEmail(EMAIL))
+				.thenAnswer(invocation -> {
+					service.evict(EMAIL);
+					return Optional.of(login("old-hash"));
+				})
+				.thenReturn(Optional.of(login("new-hash")));
+
+		assertEquals("old-hash", service.loadUserByUsername(EMAIL).getPassword());
+		assertEquals("new-hash", service.loadUserByUsername(EMAIL).getPassword());
+		assertEquals("new-hash", service.loadUserByUsername(EMAIL).getPassword());
+		verify(repository, times(2)).findByEmail(EMAIL);
+	}
+
+	private static Login login(String password) {
+		return new Login(1L, "Test", "User", EMAIL, password, null);
+	}
+}
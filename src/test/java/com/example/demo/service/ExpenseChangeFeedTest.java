@@ -0,0 +1,206 @@
+package com.example.demo.service;
+
+import com.example.demo.exception.PreconditionFailedException;
+import com.example.demo.model.Expense;
+import com.example.demo.model.Login;
+import com.example.demo.repository.LoginRepository;
+import com.example.demo.util.JwtUtil;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// GET /api/expenses/stream over a real connection: committed writes arrive in order with consecutive
+// ids, rolled-back ones never do, and Last-Event-ID resumes or resets. Skipped unless TEST_DB_URL is set:
+//   TEST_DB_URL=jdbc:postgresql://localhost:5432/demo_test mvn test -Dtest=ExpenseChangeFeedTest
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("it")
+@EnabledIfEnvironmentVariable(named = "TEST_DB_URL", matches = ".+")
+class ExpenseChangeFeedTest {
+
+	@LocalServerPort
+	private int port;
+
+	@Autowired
+	private ExpenseService expenseService;
+
+	@Autowired
+	private LoginRepository loginRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private JwtUtil jwtUtil;
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final HttpClient client = HttpClient.newHttpClient();
+	private final List<Stream<String>> openStreams = new ArrayList<>();
+	private Login login;
+
+	private record Event(String id, String name, String data) {
+	}
+
+	@BeforeEach
+	void createUser() {
+		login = loginRepository.save(new Login(null, "Stream", "User",
+				"stream-" + UUID.randomUUID() + "@example.com", "not-a-real-hash", null));
+	}
+
+	@AfterEach
+	void deleteUser() {
+		openStreams.forEach(Stream::close);
+		loginRepository.deleteById(login.getId());
+	}
+
+	@Test
+	void streamsCommittedChangesInOrder() throws Exception {
+		Expense first = expenseService.createExpense(expense("Before"));
+		BlockingQueue<Event> events = subscribe(null);
+
+		Expense created = expenseService.createExpense(expense("Coffee"));
+		Expense changes = new Expense();
+		changes.setCost(new BigDecimal("4.20"));
+		expenseService.patchExpense(created.getId(), login.getId(), null, changes);
+		// Rolled back, so it must not be sent
+		assertThrows(PreconditionFailedException.class,
+				() -> expenseService.deleteExpense(first.getId(), login.getId(), 99L));
+		expenseService.createExpenses(login.getId(), List.of(expense("Tea"), expense("Cake")));
+		expenseService.deleteExpense(first.getId(), login.getId(), null);
+
+		Event createdEvent = next(events);
+		assertEquals("created", createdEvent.name());
+		assertEquals("Coffee", json(createdEvent).get(0).get("item").asText());
+		Event updated = next(events);
+		assertEquals("updated", updated.name());
+		assertEquals(0, new BigDecimal("4.20").compareTo(json(updated).get("cost").decimalValue()));
+		Event batch = next(events);
+		assertEquals("created", batch.name());
+		assertEquals(2, json(batch).size());
+		Event deleted = next(events);
+		assertEquals("deleted", deleted.name());
+		assertEquals(first.getId().longValue(), json(deleted).get("id").asLong());
+
+		long firstId = Long.parseLong(createdEvent.id());
+		assertEquals(List.of(firstId + 1, firstId + 2, firstId + 3),
+				Stream.of(updated, batch, deleted).map(event -> Long.parseLong(event.id())).toList());
+		assertNull(events.poll(500, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	void resumesAfterLastEventId() throws Exception {
+		Expense created = expenseService.createExpense(expense("Seen"));
+		long seen = dataVersion();
+		expenseService.createExpense(expense("Missed"));
+		expenseService.deleteExpense(created.getId(), login.getId(), null);
+
+		BlockingQueue<Event> events = subscribe(Long.toString(seen));
+
+		Event missed = next(events);
+		assertEquals("created", missed.name());
+		assertEquals(Long.toString(seen + 1), missed.id());
+		assertEquals("Missed", json(missed).get(0).get("item").asText());
+		assertEquals("deleted", next(events).name());
+	}
+
+	@Test
+	void resetsWhenMissedEventsAreGone() throws Exception {
+		expenseService.createExpense(expense("One"));
+		long seen = dataVersion();
+		expenseService.createExpense(expense("Two"));
+		jdbcTemplate.update("DELETE FROM expense_events WHERE user_id = ?", login.getId());
+
+		BlockingQueue<Event> events = subscribe(Long.toString(seen));
+
+		Event reset = next(events);
+		assertEquals(ExpenseChangeFeed.RESET_EVENT, reset.name());
+		assertEquals(Long.toString(dataVersion()), reset.id());
+		// Later changes follow the reset as usual
+		expenseService.createExpense(expense("Three"));
+		assertEquals(Long.toString(dataVersion()), next(events).id());
+	}
+
+	// Reads the stream on a background thread, turning its lines into events
+	private BlockingQueue<Event> subscribe(String lastEventId) throws Exception {
+		HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/expenses/stream"))
+				.header("Authorization", "Bearer " + jwtUtil.generateToken(login.getEmail(), login.getId()))
+				.header("Accept", "text/event-stream");
+		if (lastEventId != null) {
+			request.header("Last-Event-ID", lastEventId);
+		}
+		HttpResponse<Stream<String>> response = client.send(request.build(), HttpResponse.BodyHandlers.ofLines());
+		assertEquals(200, response.statusCode());
+		openStreams.add(response.body());
+		BlockingQueue<Event> events = new LinkedBlockingQueue<>();
+		Thread reader = new Thread(() -> {
+			String id = null;
+			String name = null;
+			StringBuilder data = new StringBuilder();
+			try {
+				for (String line : (Iterable<String>) response.body()::iterator) {
+					if (line.isEmpty()) {
+						if (name != null) {
+							events.add(new Event(id, name, data.toString()));
+						}
+						id = null;
+						name = null;
+						data.setLength(0);
+					} else if (line.startsWith("id:")) {
+						id = line.substring(3);
+					} else if (line.startsWith("event:")) {
+						name = line.substring(6);
+					} else if (line.startsWith("data:")) {
+						data.append(line.substring(5));
+					}
+				}
+			} catch (RuntimeException e) {
+				// Stream closed by the test
+			}
+		});
+		reader.setDaemon(true);
+		reader.start();
+		return events;
+	}
+
+	private static Event next(BlockingQueue<Event> events) throws InterruptedException {
+		Event event = events.poll(10, TimeUnit.SECONDS);
+		assertNotNull(event, "no event within 10 seconds");
+		return event;
+	}
+
+	private JsonNode json(Event event) throws Exception {
+		return objectMapper.readTree(event.data());
+	}
+
+	private long dataVersion() {
+		return jdbcTemplate.queryForObject("SELECT version FROM user_data_versions WHERE user_id = ?", Long.class, login.getId());
+	}
+
+	private Expense expense(String item) {
+		return new Expense(login.getId(), item, new BigDecimal("3.50"), LocalDate.of(2025, 3, 1), "Food", null, "Card", null);
+	}
+}
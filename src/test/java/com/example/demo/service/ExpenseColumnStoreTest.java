@@ -0,0 +1,162 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Expense;
+import com.example.demo.model.ExpensePage;
+import com.example.demo.model.ExpenseView;
+import com.example.demo.model.Login;
+import com.example.demo.repository.LoginRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Random writes through ExpenseService with the column store on, after each of which the store's
+// answers must equal the same aggregates computed by SQL. Skipped unless TEST_DB_URL is set:
+//   TEST_DB_URL=jdbc:postgresql://localhost:5432/demo_test mvn test -Dtest=ExpenseColumnStoreTest
+@SpringBootTest(properties = "COLUMN_STORE_ENABLED=true")
+@ActiveProfiles("it")
+@EnabledIfEnvironmentVariable(named = "TEST_DB_URL", matches = ".+")
+class ExpenseColumnStoreTest {
+
+	private static final String[] CATEGORIES = {null, "Food", "Rent", "Travel"};
+	private static final String[] PAYMENT_METHODS = {null, "Card", "Cash"};
+	private static final LocalDate FIRST_DAY = LocalDate.of(2024, 1, 1);
+
+	@Autowired
+	private ExpenseService expenseService;
+
+	@Autowired
+	private ExpenseColumnStore columnStore;
+
+	@Autowired
+	private LoginRepository loginRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	private Login login;
+
+	@BeforeEach
+	void createUser() {
+		login = loginRepository.save(new Login(null, "Columns", "User",
+				"columns-" + UUID.randomUUID() + "@example.com", "not-a-real-hash", null));
+	}
+
+	@AfterEach
+	void deleteUser() {
+		loginRepository.deleteById(login.getId());
+	}
+
+	@Test
+	void answersMatchSqlAfterRandomWrites() {
+		Random random = new Random(42);
+		for (int i = 0; i < 20; i++) {
+			expenseService.createExpense(randomExpense(random));
+		}
+		assertMatchesSql(random, "initial");
+		for (int step = 0; step < 60; step++) {
+			List<Long> ids = ids();
+			int action = random.nextInt(5);
+			if (action == 0 || ids.isEmpty()) {
+				expenseService.createExpense(randomExpense(random));
+			} else if (action == 1) {
+				List<Expense> batch = new ArrayList<>();
+				for (int i = random.nextInt(5) + 1; i > 0; i--) {
+					batch.add(randomExpense(random));
+				}
+				expenseService.createExpenses(login.getId(), batch);
+			} else if (action == 2) {
+				Long id = ids.get(random.nextInt(ids.size()));
+				assertTrue(expenseService.updateExpense(id, login.getId(), null, randomExpense(random)).isPresent());
+			} else if (action == 3) {
+				Long id = ids.get(random.nextInt(ids.size()));
+				Expense changes = new Expense();
+				changes.setCost(randomCost(random));
+				changes.setExpenseDate(randomDate(random));
+				assertTrue(expenseService.patchExpense(id, login.getId(), null, changes).isPresent());
+			} else {
+				assertTrue(expenseService.deleteExpense(ids.get(random.nextInt(ids.size())), login.getId(), null));
+			}
+			assertMatchesSql(random, "step " + step);
+		}
+	}
+
+	// A write through another instance is not applied here, but it moves the user's data version on
+	@Test
+	void reloadsAfterAWriteMadeElsewhere() {
+		Random random = new Random(7);
+		for (int i = 0; i < 5; i++) {
+			expenseService.createExpense(randomExpense(random));
+		}
+		assertMatchesSql(random, "before");
+		jdbcTemplate.update("INSERT INTO expenses (user_id, item, cost, expense_date, created_at, updated_at, version) " +
+				"VALUES (?, 'Elsewhere', 123.45, ?, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP, 0)", login.getId(), FIRST_DAY);
+		jdbcTemplate.update("UPDATE user_data_versions SET version = version + 1 WHERE user_id = ?", login.getId());
+		assertMatchesSql(random, "after");
+		expenseService.createExpense(randomExpense(random));
+		assertMatchesSql(random, "local write after the reload");
+	}
+
+	private void assertMatchesSql(Random random, String context) {
+		Long userId = login.getId();
+		assertEquals(0, sql("SELECT coalesce(sum(cost), 0) FROM expenses WHERE user_id = ?", userId)
+				.compareTo(columnStore.total(userId)), context);
+		for (int i = 0; i < 5; i++) {
+			LocalDate start = randomDate(random);
+			LocalDate end = start.plusDays(random.nextInt(200));
+			BigDecimal expected = sql("SELECT coalesce(sum(cost), 0) FROM expenses WHERE user_id = ? " +
+					"AND expense_date BETWEEN ? AND ?", userId, start, end);
+			assertEquals(0, expected.compareTo(columnStore.total(userId, start, end)), context + ", " + start + ".." + end);
+		}
+		for (String category : CATEGORIES) {
+			if (category != null) {
+				BigDecimal expected = sql("SELECT coalesce(sum(cost), 0) FROM expenses WHERE user_id = ? AND category = ?",
+						userId, category);
+				assertEquals(0, expected.compareTo(columnStore.totalForCategory(userId, category)), context + ", " + category);
+			}
+		}
+		assertEquals(new HashSet<>(jdbcTemplate.queryForList("SELECT DISTINCT category FROM expenses " +
+				"WHERE user_id = ? AND category IS NOT NULL", String.class, userId)),
+				new HashSet<>(columnStore.categories(userId)), context);
+		assertEquals(new HashSet<>(jdbcTemplate.queryForList("SELECT DISTINCT payment_method FROM expenses " +
+				"WHERE user_id = ? AND payment_method IS NOT NULL", String.class, userId)),
+				new HashSet<>(columnStore.paymentMethods(userId)), context);
+	}
+
+	private BigDecimal sql(String query, Object... args) {
+		return jdbcTemplate.queryForObject(query, BigDecimal.class, args);
+	}
+
+	private List<Long> ids() {
+		ExpensePage<Expense> page = expenseService.getAllExpensesByUserId(login.getId(), null, 1000, ExpenseView.FULL);
+		return page.items().stream().map(Expense::getId).toList();
+	}
+
+	private Expense randomExpense(Random random) {
+		return new Expense(login.getId(), "Item", randomCost(random), randomDate(random),
+				CATEGORIES[random.nextInt(CATEGORIES.length)], null, PAYMENT_METHODS[random.nextInt(PAYMENT_METHODS.length)], null);
+	}
+
+	private static BigDecimal randomCost(Random random) {
+		return BigDecimal.valueOf(random.nextInt(100_000) + 1, 2);
+	}
+
+	// Spans two years, so rows move between partitions when their date changes
+	private static LocalDate randomDate(Random random) {
+		return FIRST_DAY.plusDays(random.nextInt(730));
+	}
+}
@@ -0,0 +1,105 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Expense;
+import com.example.demo.model.ExpensePage;
+import com.example.demo.model.ExpenseView;
+import com.example.demo.model.Login;
+import com.example.demo.repository.LoginRepository;
+import com.example.demo.util.JwtUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Keyset pages over rows that share an expense_date, and bad cursors over HTTP. Skipped unless TEST_DB_URL is set:
+//   TEST_DB_URL=jdbc:postgresql://localhost:5432/demo_test mvn test -Dtest=ExpensePagingTest
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("it")
+@EnabledIfEnvironmentVariable(named = "TEST_DB_URL", matches = ".+")
+class ExpensePagingTest {
+
+	@LocalServerPort
+	private int port;
+
+	@Autowired
+	private ExpenseService expenseService;
+
+	@Autowired
+	private JwtUtil jwtUtil;
+
+	@Autowired
+	private LoginRepository loginRepository;
+
+	private final HttpClient client = HttpClient.newHttpClient();
+	private Login login;
+
+	@BeforeEach
+	void createUser() {
+		login = loginRepository.save(new Login(null, "Paging", "User",
+				"paging-" + UUID.randomUUID() + "@example.com", "not-a-real-hash", null));
+	}
+
+	@AfterEach
+	void deleteUser() {
+		loginRepository.deleteById(login.getId());
+	}
+
+	@Test
+	void walksRowsWithEqualDates() {
+		List<Expense> expenses = new ArrayList<>();
+		for (int i = 0; i < 23; i++) {
+			// Three dates, so page boundaries fall inside runs of equal dates
+			expenses.add(new Expense(login.getId(), "Item " + i, new BigDecimal("1.00"),
+					LocalDate.of(2025, 3, 1 + i % 3), "Food", null, "Card", null));
+		}
+		expenseService.createExpenses(login.getId(), expenses);
+		List<Long> expected = expenseService.getAllExpensesByUserId(login.getId(), null, ExpenseService.MAX_PAGE_SIZE,
+				ExpenseView.FULL).items().stream()
+				.sorted(Comparator.comparing(Expense::getExpenseDate).thenComparing(Expense::getId).reversed())
+				.map(Expense::getId).toList();
+		assertEquals(23, expected.size());
+
+		List<Long> walked = new ArrayList<>();
+		String cursor = null;
+		do {
+			ExpensePage<Expense> page = expenseService.getAllExpensesByUserId(login.getId(), cursor, 4, ExpenseView.FULL);
+			assertTrue(page.items().size() <= 4);
+			page.items().forEach(expense -> walked.add(expense.getId()));
+			cursor = page.nextCursor();
+		} while (cursor != null);
+
+		assertEquals(expected, walked);
+	}
+
+	@Test
+	void badCursorIsABadRequest() throws Exception {
+		String outOfRange = Base64.getUrlEncoder().withoutPadding()
+				.encodeToString("-999999999-01-01:1".getBytes(StandardCharsets.UTF_8));
+		for (String cursor : new String[] {"garbage", "Zm9v", outOfRange}) {
+			HttpRequest request = HttpRequest.newBuilder(
+							URI.create("http://localhost:" + port + "/api/expenses?limit=5&cursor=" + cursor))
+					.header("Authorization", "Bearer " + jwtUtil.generateToken(login.getEmail(), login.getId()))
+					.build();
+			assertEquals(400, client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode(), cursor);
+		}
+	}
+}
@@ -0,0 +1,142 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Expense;
+import com.example.demo.model.Login;
+import com.example.demo.repository.LoginRepository;
+import com.example.demo.util.JwtUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Splits years off the catch-all partitions of expenses and detaches the oldest. Skipped unless TEST_DB_URL is set:
+//   TEST_DB_URL=jdbc:postgresql://localhost:5432/demo_test mvn test -Dtest=ExpensePartitionMaintenanceTest
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("it")
+@EnabledIfEnvironmentVariable(named = "TEST_DB_URL", matches = ".+")
+class ExpensePartitionMaintenanceTest {
+
+	@LocalServerPort
+	private int port;
+
+	@Autowired
+	private ExpensePartitionMaintenance maintenance;
+
+	@Autowired
+	private ExpenseService expenseService;
+
+	@Autowired
+	private JwtUtil jwtUtil;
+
+	@Autowired
+	private LoginRepository loginRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	private final HttpClient client = HttpClient.newHttpClient();
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private Login login;
+
+	@BeforeEach
+	void createUser() {
+		login = loginRepository.save(new Login(null, "Partition", "User",
+				"partition-" + UUID.randomUUID() + "@example.com", "not-a-real-hash", null));
+	}
+
+	@AfterEach
+	void deleteUser() {
+		loginRepository.deleteById(login.getId());
+	}
+
+	@Test
+	void newYearTakesItsRowsFromExpensesFuture() {
+		List<Integer> years = maintenance.attachedYears();
+		int nextYear = years.get(years.size() - 1) + 1;
+		LocalDate date = LocalDate.of(nextYear, 6, 1);
+		jdbcTemplate.update("INSERT INTO expenses (user_id, item, cost, expense_date) VALUES (?, 'Later', 1.00, ?)",
+				login.getId(), date);
+		assertEquals("expenses_future", partitionOf(date));
+
+		assertTrue(maintenance.createYear(nextYear));
+
+		assertEquals("expenses_y" + nextYear, partitionOf(date));
+		assertTrue(maintenance.attachedYears().contains(nextYear));
+		assertFalse(maintenance.createYear(nextYear));
+		// Rows after the new year still have a partition
+		jdbcTemplate.update("INSERT INTO expenses (user_id, item, cost, expense_date) VALUES (?, 'Much later', 1.00, ?)",
+				login.getId(), date.plusYears(1));
+		assertEquals("expenses_future", partitionOf(date.plusYears(1)));
+	}
+
+	@Test
+	void yearsStayContiguous() {
+		List<Integer> years = maintenance.attachedYears();
+		int gap = years.get(years.size() - 1) + 2;
+		assertThrows(IllegalArgumentException.class, () -> maintenance.createYear(gap));
+	}
+
+	// A year is split off expenses_past first, so only this test's rows are detached and the layout
+	// other tests expect is back afterwards
+	@Test
+	void detachedRowsLeaveCachedAndConditionalReads() throws Exception {
+		int year = maintenance.attachedYears().get(0) - 1;
+		assertTrue(maintenance.createYear(year));
+		String detached = "expenses_y" + year;
+		try {
+			expenseService.createExpense(new Expense(login.getId(), "Old", new BigDecimal("40.00"),
+					LocalDate.of(year, 6, 1), "Food", null, "Card", null));
+			expenseService.createExpense(new Expense(login.getId(), "Recent", new BigDecimal("2.50"),
+					LocalDate.now(), "Food", null, "Card", null));
+			HttpResponse<String> before = summary(null);
+			assertEquals(200, before.statusCode());
+			assertEquals(0, new BigDecimal("42.50").compareTo(total(before)));
+			String etag = before.headers().firstValue("ETag").orElseThrow();
+			assertEquals(304, summary(etag).statusCode());
+
+			assertTrue(maintenance.detachOldestYear(year));
+
+			HttpResponse<String> after = summary(etag);
+			assertEquals(200, after.statusCode());
+			assertEquals(0, new BigDecimal("2.50").compareTo(total(after)));
+			assertNotEquals(etag, after.headers().firstValue("ETag").orElseThrow());
+		} finally {
+			jdbcTemplate.execute("DROP TABLE IF EXISTS " + detached);
+		}
+	}
+
+	private HttpResponse<String> summary(String ifNoneMatch) throws Exception {
+		HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/expenses/summary"))
+				.header("Authorization", "Bearer " + jwtUtil.generateToken(login.getEmail(), login.getId()));
+		if (ifNoneMatch != null) {
+			request.header("If-None-Match", ifNoneMatch);
+		}
+		return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+	}
+
+	private BigDecimal total(HttpResponse<String> summary) throws Exception {
+		return objectMapper.readTree(summary.body()).get("overall").get("total").decimalValue();
+	}
+
+	private String partitionOf(LocalDate date) {
+		return jdbcTemplate.queryForObject("SELECT tableoid::regclass::text FROM expenses WHERE user_id = ? AND expense_date = ?",
+				String.class, login.getId(), date);
+	}
+}
@@ -0,0 +1,131 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Expense;
+import com.example.demo.model.Login;
+import com.example.demo.repository.LoginRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// The incremental rollup deltas against a GROUP BY over the raw expenses, after every kind of write,
+// and the consistency check repairing drift. Skipped unless TEST_DB_URL is set:
+//   TEST_DB_URL=jdbc:postgresql://localhost:5432/demo_test mvn test -Dtest=ExpenseRollupTest
+@SpringBootTest
+@ActiveProfiles("it")
+@EnabledIfEnvironmentVariable(named = "TEST_DB_URL", matches = ".+")
+class ExpenseRollupTest {
+
+	// Rows that still count; a rollup emptied by its last delete stays behind at zero
+	private static final String ROLLUPS = "SELECT year_month, category, payment_method, total_cost, expense_count " +
+			"FROM expense_monthly_rollups WHERE user_id = ? AND (expense_count <> 0 OR total_cost <> 0) ORDER BY 1, 2, 3";
+	private static final String RAW = "SELECT CAST(date_trunc('month', expense_date) AS DATE), COALESCE(category, ''), " +
+			"COALESCE(payment_method, ''), SUM(cost), COUNT(*) FROM expenses WHERE user_id = ? GROUP BY 1, 2, 3 ORDER BY 1, 2, 3";
+
+	@Autowired
+	private ExpenseService expenseService;
+
+	@Autowired
+	private ExpenseRollupService rollupService;
+
+	@Autowired
+	private LoginRepository loginRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	private Login login;
+
+	@BeforeEach
+	void createUser() {
+		login = loginRepository.save(new Login(null, "Rollup", "User",
+				"rollup-" + UUID.randomUUID() + "@example.com", "not-a-real-hash", null));
+	}
+
+	@AfterEach
+	void deleteUser() {
+		loginRepository.deleteById(login.getId());
+	}
+
+	@Test
+	void deltasMatchTheRawExpenses() {
+		Expense coffee = expenseService.createExpense(expense("Coffee", "3.50", LocalDate.of(2025, 3, 10), "Food", "Card"));
+		Expense rent = expenseService.createExpense(expense("Rent", "900.00", LocalDate.of(2025, 3, 1), "Home", null));
+		expenseService.createExpenses(login.getId(), List.of(
+				expense("Tea", "2.00", LocalDate.of(2025, 3, 11), "Food", "Card"),
+				expense("Cake", "4.25", LocalDate.of(2025, 4, 2), "Food", "Card")));
+		assertRollupsMatch();
+
+		// Same rollup row, new cost
+		expenseService.patchExpense(coffee.getId(), login.getId(), null, changes(c -> c.setCost(new BigDecimal("3.75"))));
+		assertRollupsMatch();
+		// Into the next month
+		expenseService.patchExpense(coffee.getId(), login.getId(), null,
+				changes(c -> c.setExpenseDate(LocalDate.of(2025, 4, 20))));
+		assertRollupsMatch();
+		// Into another category, with a new cost at the same time
+		expenseService.patchExpense(coffee.getId(), login.getId(), null, changes(c -> {
+			c.setCategory("Drinks");
+			c.setCost(new BigDecimal("4.00"));
+		}));
+		assertRollupsMatch();
+		// From no payment method to one
+		expenseService.patchExpense(rent.getId(), login.getId(), null, changes(c -> c.setPaymentMethod("Transfer")));
+		assertRollupsMatch();
+
+		expenseService.deleteExpense(coffee.getId(), login.getId(), null);
+		assertRollupsMatch();
+		expenseService.deleteExpense(rent.getId(), login.getId(), null);
+		assertRollupsMatch();
+	}
+
+	@Test
+	void consistencyCheckRepairsDrift() {
+		expenseService.createExpense(expense("Coffee", "3.50", LocalDate.of(2025, 3, 10), "Food", "Card"));
+		long dataVersion = dataVersion();
+		jdbcTemplate.update("UPDATE expense_monthly_rollups SET total_cost = total_cost + 1 WHERE user_id = ?", login.getId());
+		assertTrue(rollupService.findInconsistentUserIds().contains(login.getId()));
+
+		rollupService.checkConsistency();
+
+		assertFalse(rollupService.findInconsistentUserIds().contains(login.getId()));
+		assertRollupsMatch();
+		// Cached totals from before the repair are stale
+		assertTrue(dataVersion() > dataVersion);
+	}
+
+	private void assertRollupsMatch() {
+		assertEquals(rows(RAW), rows(ROLLUPS));
+	}
+
+	private List<List<Object>> rows(String sql) {
+		return jdbcTemplate.query(sql, (rs, row) -> List.<Object>of(rs.getDate(1).toLocalDate(), rs.getString(2),
+				rs.getString(3), rs.getBigDecimal(4).stripTrailingZeros(), rs.getLong(5)), login.getId());
+	}
+
+	private long dataVersion() {
+		return jdbcTemplate.queryForObject("SELECT version FROM user_data_versions WHERE user_id = ?", Long.class, login.getId());
+	}
+
+	private static Expense changes(Consumer<Expense> setter) {
+		Expense changes = new Expense();
+		setter.accept(changes);
+		return changes;
+	}
+
+	private Expense expense(String item, String cost, LocalDate date, String category, String paymentMethod) {
+		return new Expense(login.getId(), item, new BigDecimal(cost), date, category, null, paymentMethod, null);
+	}
+}
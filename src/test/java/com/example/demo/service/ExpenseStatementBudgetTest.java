@@ -0,0 +1,120 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Expense;
+import com.example.demo.model.ExpensePage;
+import com.example.demo.model.ExpenseView;
+import com.example.demo.model.Login;
+import com.example.demo.model.SummaryDimension;
+import com.example.demo.repository.LoginRepository;
+import com.example.demo.util.SqlStatementCounter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Pins the number of SQL statements behind the main service calls, so an N+1 or an extra
+// round trip fails here instead of showing up as latency. Skipped unless TEST_DB_URL is set:
+//   TEST_DB_URL=jdbc:postgresql://localhost:5432/demo_test mvn test -Dtest=ExpenseStatementBudgetTest
+@SpringBootTest
+@ActiveProfiles("it")
+@EnabledIfEnvironmentVariable(named = "TEST_DB_URL", matches = ".+")
+class ExpenseStatementBudgetTest {
+
+	@Autowired
+	private ExpenseService expenseService;
+
+	@Autowired
+	private LoginRepository loginRepository;
+
+	@Autowired
+	private SqlStatementCounter counter;
+
+	@Autowired
+	private UserCacheGenerations cacheGenerations;
+
+	private Login login;
+
+	@BeforeEach
+	void createUserWithExpenses() {
+		login = loginRepository.save(new Login(null, "Budget", "User",
+				"budget-" + UUID.randomUUID() + "@example.com", "not-a-real-hash", null));
+		for (int i = 0; i < 60; i++) {
+			expenseService.createExpense(expense("Item " + i, LocalDate.of(2024, 1 + i % 12, 1 + i % 28)));
+		}
+	}
+
+	@AfterEach
+	void deleteUser() {
+		loginRepository.deleteById(login.getId());
+	}
+
+	@Test
+	void createRunsInsertRollupAndVersionBump() {
+		try (SqlStatementCounter.Scope scope = counter.open()) {
+			expenseService.createExpense(expense("Coffee", LocalDate.of(2024, 3, 3)));
+			report("create", scope);
+			// Insert, rollup upsert and data version bump; the id comes from a pooled sequence
+			// so a sequence call only happens once per allocation block
+			assertTrue(scope.getStatements() <= 4);
+		}
+	}
+
+	@Test
+	void pageIsOneQueryWhateverItsSize() {
+		try (SqlStatementCounter.Scope scope = counter.open()) {
+			ExpensePage<Expense> page = expenseService.getAllExpensesByUserId(login.getId(), null, 50, ExpenseView.FULL);
+			report("page", scope);
+			assertEquals(50, page.items().size());
+			assertEquals(1, scope.getStatements());
+			assertEquals(51, scope.getEntitiesLoaded());
+		}
+	}
+
+	@Test
+	void updateIsOneStatementPlusRollupsAndVersion() {
+		Expense existing = expenseService.getAllExpensesByUserId(login.getId(), null, 1, ExpenseView.FULL).items().get(0);
+		try (SqlStatementCounter.Scope scope = counter.open()) {
+			Expense changed = expense("Changed", existing.getExpenseDate().plusMonths(1));
+			assertTrue(expenseService.updateExpense(existing.getId(), login.getId(), null, changed).isPresent());
+			report("update", scope);
+			// UPDATE ... RETURNING, two rollup upserts (old and new month) and the version bump
+			assertTrue(scope.getStatements() <= 4);
+		}
+	}
+
+	// As in a GET, where DataVersionInterceptor has already read the version that keys the cached summary
+	@Test
+	void summaryIsOneGroupByQuery() {
+		RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+		cacheGenerations.currentForRequest(login.getId());
+		try (SqlStatementCounter.Scope scope = counter.open()) {
+			expenseService.getSummary(login.getId(), null, null, List.of(SummaryDimension.CATEGORY, SummaryDimension.MONTH));
+			report("summary", scope);
+			assertEquals(1, scope.getStatements());
+			assertEquals(0, scope.getEntitiesLoaded());
+		} finally {
+			RequestContextHolder.resetRequestAttributes();
+		}
+	}
+
+	private Expense expense(String item, LocalDate date) {
+		return new Expense(login.getId(), item, new BigDecimal("12.50"), date, "Food", null, "Card", null);
+	}
+
+	private static void report(String operation, SqlStatementCounter.Scope scope) {
+		System.out.printf("%s: %d statements, %d entities loaded%n", operation, scope.getStatements(), scope.getEntitiesLoaded());
+	}
+}
@@ -0,0 +1,150 @@
+package com.example.demo.service;
+
+import com.example.demo.exception.PreconditionFailedException;
+import com.example.demo.model.Expense;
+import com.example.demo.model.Login;
+import com.example.demo.repository.LoginRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// The native UPDATE behind PUT and PATCH: columns, versions, the previous values handed to the rollups,
+// and writes that change nothing. Skipped unless TEST_DB_URL is set:
+//   TEST_DB_URL=jdbc:postgresql://localhost:5432/demo_test mvn test -Dtest=ExpenseUpdateTest
+@SpringBootTest
+@ActiveProfiles("it")
+@EnabledIfEnvironmentVariable(named = "TEST_DB_URL", matches = ".+")
+class ExpenseUpdateTest {
+
+	@Autowired
+	private ExpenseService expenseService;
+
+	@Autowired
+	private LoginRepository loginRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	private Login login;
+
+	@BeforeEach
+	void createUser() {
+		login = loginRepository.save(new Login(null, "Update", "User",
+				"update-" + UUID.randomUUID() + "@example.com", "not-a-real-hash", null));
+	}
+
+	@AfterEach
+	void deleteUser() {
+		loginRepository.deleteById(login.getId());
+	}
+
+	@Test
+	void putReplacesEveryColumn() {
+		Expense created = expenseService.createExpense(expense("Coffee", "3.50", LocalDate.of(2025, 3, 10)));
+		Expense replacement = new Expense(login.getId(), "Tea", new BigDecimal("2.00"), LocalDate.of(2025, 3, 12),
+				"Drinks", null, "Cash", "Cafe");
+
+		Expense updated = expenseService.updateExpense(created.getId(), login.getId(), created.getVersion(), replacement)
+				.orElseThrow();
+
+		assertEquals("Tea", updated.getItem());
+		assertEquals(0, new BigDecimal("2.00").compareTo(updated.getCost()));
+		assertEquals("Drinks", updated.getCategory());
+		assertNull(updated.getDescription());
+		assertEquals("Cafe", updated.getLocation());
+		assertEquals(created.getVersion() + 1, updated.getVersion());
+		assertEquals(created.getCreatedAt().truncatedTo(ChronoUnit.MILLIS), updated.getCreatedAt().truncatedTo(ChronoUnit.MILLIS));
+	}
+
+	@Test
+	void patchKeepsColumnsItDoesNotSet() {
+		Expense created = expenseService.createExpense(expense("Coffee", "3.50", LocalDate.of(2025, 3, 10)));
+		Expense changes = new Expense();
+		changes.setCost(new BigDecimal("4.20"));
+
+		Expense patched = expenseService.patchExpense(created.getId(), login.getId(), null, changes).orElseThrow();
+
+		assertEquals("Coffee", patched.getItem());
+		assertEquals(0, new BigDecimal("4.20").compareTo(patched.getCost()));
+		assertEquals("Food", patched.getCategory());
+		assertEquals("Card", patched.getPaymentMethod());
+		assertEquals(created.getVersion() + 1, patched.getVersion());
+	}
+
+	@Test
+	void writeThatChangesNothingKeepsTheVersion() {
+		Expense created = expenseService.createExpense(expense("Coffee", "3.50", LocalDate.of(2025, 3, 10)));
+		long dataVersion = dataVersion();
+
+		Expense patched = expenseService.patchExpense(created.getId(), login.getId(), created.getVersion(), new Expense())
+				.orElseThrow();
+		Expense same = expense("Coffee", "3.5", LocalDate.of(2025, 3, 10));
+		Expense put = expenseService.updateExpense(created.getId(), login.getId(), null, same).orElseThrow();
+
+		assertEquals(created.getVersion(), patched.getVersion());
+		assertEquals(created.getVersion(), put.getVersion());
+		assertEquals(dataVersion, dataVersion());
+		// Still checked against the expected version
+		assertThrows(PreconditionFailedException.class,
+				() -> expenseService.patchExpense(created.getId(), login.getId(), created.getVersion() + 1, new Expense()));
+	}
+
+	@Test
+	void staleVersionIsRejected() {
+		Expense created = expenseService.createExpense(expense("Coffee", "3.50", LocalDate.of(2025, 3, 10)));
+		Expense changes = new Expense();
+		changes.setItem("Latte");
+		expenseService.patchExpense(created.getId(), login.getId(), created.getVersion(), changes).orElseThrow();
+
+		changes.setItem("Mocha");
+		assertThrows(PreconditionFailedException.class,
+				() -> expenseService.patchExpense(created.getId(), login.getId(), created.getVersion(), changes));
+		assertThrows(PreconditionFailedException.class,
+				() -> expenseService.updateExpense(created.getId(), login.getId(), created.getVersion(),
+						expense("Mocha", "3.50", LocalDate.of(2025, 3, 10))));
+		assertEquals("Latte", expenseService.getExpenseByIdAndUserId(created.getId(), login.getId()).orElseThrow().getItem());
+		// Someone else's or a missing expense is simply not found
+		assertTrue(expenseService.patchExpense(created.getId(), login.getId() + 1_000_000, null, changes).isEmpty());
+		assertTrue(expenseService.patchExpense(-1L, login.getId(), 1L, changes).isEmpty());
+	}
+
+	@Test
+	void moveAcrossMonthsMovesTheRollup() {
+		Expense created = expenseService.createExpense(expense("Coffee", "3.50", LocalDate.of(2025, 3, 31)));
+		expenseService.createExpense(expense("Bagel", "2.00", LocalDate.of(2025, 3, 5)));
+		Expense changes = new Expense();
+		changes.setExpenseDate(LocalDate.of(2025, 4, 1));
+
+		expenseService.patchExpense(created.getId(), login.getId(), null, changes).orElseThrow();
+
+		assertEquals(Map.of("total", new BigDecimal("2.00"), "count", 1L), rollup(LocalDate.of(2025, 3, 1)));
+		assertEquals(Map.of("total", new BigDecimal("3.50"), "count", 1L), rollup(LocalDate.of(2025, 4, 1)));
+	}
+
+	private Map<String, Object> rollup(LocalDate month) {
+		return jdbcTemplate.queryForObject("SELECT total_cost, expense_count FROM expense_monthly_rollups " +
+						"WHERE user_id = ? AND year_month = ? AND category = 'Food' AND payment_method = 'Card'",
+				(rs, row) -> Map.of("total", rs.getBigDecimal(1), "count", rs.getLong(2)), login.getId(), month);
+	}
+
+	private long dataVersion() {
+		return jdbcTemplate.queryForObject("SELECT version FROM user_data_versions WHERE user_id = ?", Long.class, login.getId());
+	}
+
+	private Expense expense(String item, String cost, LocalDate date) {
+		return new Expense(login.getId(), item, new BigDecimal(cost), date, "Food", null, "Card", null);
+	}
+}
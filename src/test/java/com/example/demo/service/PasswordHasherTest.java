@@ -0,0 +1,42 @@
+package com.example.demo.service;
+
+import com.example.demo.exception.PasswordHashingBusyException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PasswordHasherTest {
+
+	@Test
+	void hashFromOtherStrengthNeedsRehash() {
+		PasswordHasher hasher = new PasswordHasher(4, 1, 10, new SimpleMeterRegistry());
+		String hash = hasher.encodeNow("secret");
+
+		assertTrue(hash.startsWith("$2a$04$"));
+		assertTrue(hasher.matches("secret", hash).join());
+		assertFalse(hasher.matches("wrong", hash).join());
+		assertFalse(hasher.needsRehash(hash));
+		assertTrue(new PasswordHasher(5, 1, 10, new SimpleMeterRegistry()).needsRehash(hash));
+		assertEquals(3, hasher.getHashCount());
+	}
+
+	@Test
+	void fullQueueIsRejectedImmediately() {
+		PasswordHasher hasher = new PasswordHasher(12, 1, 1, new SimpleMeterRegistry());
+		List<CompletableFuture<String>> accepted = new ArrayList<>();
+
+		// One hash runs, one waits; the third has nowhere to go
+		accepted.add(hasher.encode("a"));
+		accepted.add(hasher.encode("b"));
+		assertThrows(PasswordHashingBusyException.class, () -> hasher.encode("c"));
+		assertEquals(1, hasher.getRejected());
+
+		accepted.forEach(CompletableFuture::join);
+		hasher.shutdown();
+	}
+}
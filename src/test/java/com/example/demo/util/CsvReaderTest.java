@@ -0,0 +1,34 @@
+package com.example.demo.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvReaderTest {
+
+	@Test
+	void readsQuotedFieldsAcrossLines() throws IOException {
+		CsvReader csv = new CsvReader(new StringReader(
+				"item,cost\r\n\"Coffee, large\",3.50\n\n\"said \"\"hi\"\"\nagain\",1\nlast,"), 1024);
+
+		assertEquals(List.of("item", "cost"), csv.readRecord());
+		assertEquals(List.of("Coffee, large", "3.50"), csv.readRecord());
+		assertEquals(2, csv.getRecordLine());
+		assertEquals(List.of("said \"hi\"\nagain", "1"), csv.readRecord());
+		assertEquals(4, csv.getRecordLine());
+		assertEquals(List.of("last", ""), csv.readRecord());
+		assertEquals(6, csv.getRecordLine());
+		assertNull(csv.readRecord());
+	}
+
+	@Test
+	void rejectsRunawayRecords() {
+		CsvReader csv = new CsvReader(new StringReader("\"never closed,1\n2,3\n"), 8);
+
+		assertThrows(IOException.class, csv::readRecord);
+	}
+}
@@ -0,0 +1,166 @@
+package com.example.demo.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Random sequences of creates, updates, deletes and replayed or stale changes, each step checked against
+// a plain map of the live rows. The seed is in every failure message so a failing run can be repeated.
+class ExpenseColumnsTest {
+
+	private static final String[] CATEGORIES = {null, "", "Food", "Rent", "Travel", "Fuel"};
+	private static final String[] PAYMENT_METHODS = {null, "Card", "Cash", "Transfer"};
+	private static final int DAYS = 400;
+
+	@Test
+	void matchesModelUnderRandomChanges() {
+		for (long seed = 1; seed <= 200; seed++) {
+			runScenario(seed, 150);
+		}
+	}
+
+	@Test
+	void loadedColumnsMatchIncrementalOnes() {
+		for (long seed = 1; seed <= 50; seed++) {
+			Random random = new Random(seed);
+			ExpenseColumns incremental = ExpenseColumns.EMPTY;
+			Map<Long, ExpenseColumns.Row> model = new HashMap<>();
+			for (long id = 1; id <= 300; id++) {
+				ExpenseColumns.Row row = randomRow(random, id, 0);
+				incremental = incremental.with(row);
+				model.put(id, row);
+			}
+			ExpenseColumns.Builder builder = new ExpenseColumns.Builder();
+			model.values().stream()
+					.sorted(Comparator.comparingInt(ExpenseColumns.Row::day).thenComparingLong(ExpenseColumns.Row::id))
+					.forEach(builder::add);
+			ExpenseColumns loaded = builder.build();
+			for (int i = 0; i < 50; i++) {
+				int from = random.nextInt(DAYS);
+				int to = from + random.nextInt(DAYS);
+				assertEquals(incremental.totalCents(from, to), loaded.totalCents(from, to), "seed " + seed);
+			}
+			assertEquals(incremental.totalCents(), loaded.totalCents(), "seed " + seed);
+		}
+	}
+
+	@Test
+	void asksForReloadOnceTombstonesPileUp() {
+		ExpenseColumns columns = ExpenseColumns.EMPTY;
+		for (long id = 1; id < ExpenseColumns.MAX_DELETED_IDS; id++) {
+			columns = columns.without(id).without(id);
+		}
+		assertFalse(columns.needsReload());
+		assertSame(columns, columns.with(new ExpenseColumns.Row(1, 1, 1, null, null, 1)));
+		columns = columns.without(ExpenseColumns.MAX_DELETED_IDS);
+		assertTrue(columns.needsReload());
+		assertFalse(new ExpenseColumns.Builder().build().needsReload());
+	}
+
+	@Test
+	void rejectsRowsOutOfOrder() {
+		ExpenseColumns.Builder builder = new ExpenseColumns.Builder().add(new ExpenseColumns.Row(2, 10, 100, null, null, 0));
+		assertThrows(IllegalArgumentException.class, () -> builder.add(new ExpenseColumns.Row(1, 10, 100, null, null, 0)));
+	}
+
+	private void runScenario(long seed, int steps) {
+		Random random = new Random(seed);
+		ExpenseColumns columns = ExpenseColumns.EMPTY;
+		Map<Long, ExpenseColumns.Row> model = new HashMap<>();
+		List<ExpenseColumns.Row> history = new ArrayList<>();
+		Set<Long> deleted = new HashSet<>();
+		long nextId = 1;
+		for (int step = 0; step < steps; step++) {
+			int action = random.nextInt(10);
+			if (action < 5 || model.isEmpty()) {
+				ExpenseColumns.Row row = randomRow(random, nextId++, 0);
+				columns = columns.with(row);
+				model.put(row.id(), row);
+				history.add(row);
+			} else if (action < 8) {
+				ExpenseColumns.Row current = randomLive(random, model);
+				ExpenseColumns.Row row = randomRow(random, current.id(), current.version() + 1);
+				columns = columns.with(row);
+				model.put(row.id(), row);
+				history.add(row);
+			} else if (action < 9) {
+				ExpenseColumns.Row current = randomLive(random, model);
+				columns = columns.without(current.id());
+				model.remove(current.id());
+				deleted.add(current.id());
+			} else {
+				// A change delivered again or late must not alter anything
+				columns = columns.with(history.get(random.nextInt(history.size())));
+			}
+			assertMatches(seed, step, random, columns, model);
+		}
+		for (long id : deleted) {
+			assertSame(columns, columns.with(new ExpenseColumns.Row(id, 1, 1, null, null, Long.MAX_VALUE)), "seed " + seed);
+		}
+	}
+
+	private static void assertMatches(long seed, int step, Random random, ExpenseColumns columns,
+									  Map<Long, ExpenseColumns.Row> model) {
+		String context = "seed " + seed + ", step " + step;
+		assertEquals(model.size(), columns.size(), context);
+		assertEquals(sum(model, 0, Integer.MAX_VALUE), columns.totalCents(), context);
+		for (int i = 0; i < 5; i++) {
+			int from = random.nextInt(DAYS + 20) - 10;
+			int to = from + random.nextInt(DAYS / 2) - 20;
+			assertEquals(sum(model, from, to), columns.totalCents(from, to), context + ", days " + from + ".." + to);
+		}
+		for (String category : CATEGORIES) {
+			if (category == null) {
+				continue;
+			}
+			long expected = model.values().stream()
+					.filter(row -> category.equals(row.category() == null ? "" : row.category()))
+					.mapToLong(ExpenseColumns.Row::cents)
+					.sum();
+			assertEquals(expected, columns.categoryTotalCents(category), context + ", category " + category);
+		}
+		assertEquals(0, columns.categoryTotalCents("Unknown"), context);
+		assertEquals(distinct(model, ExpenseColumns.Row::category), new HashSet<>(columns.categories()), context);
+		assertEquals(distinct(model, ExpenseColumns.Row::paymentMethod), new HashSet<>(columns.paymentMethods()), context);
+	}
+
+	private static long sum(Map<Long, ExpenseColumns.Row> model, int fromDay, int toDay) {
+		return model.values().stream()
+				.filter(row -> row.day() >= fromDay && row.day() <= toDay)
+				.mapToLong(ExpenseColumns.Row::cents)
+				.sum();
+	}
+
+	private static Set<String> distinct(Map<Long, ExpenseColumns.Row> model,
+										java.util.function.Function<ExpenseColumns.Row, String> column) {
+		Set<String> values = new HashSet<>();
+		for (ExpenseColumns.Row row : model.values()) {
+			if (column.apply(row) != null) {
+				values.add(column.apply(row));
+			}
+		}
+		return values;
+	}
+
+	private static ExpenseColumns.Row randomLive(Random random, Map<Long, ExpenseColumns.Row> model) {
+		List<Long> ids = new ArrayList<>(model.keySet());
+		ids.sort(null);
+		return model.get(ids.get(random.nextInt(ids.size())));
+	}
+
+	// Few distinct days, so many rows share a day and ordering by id within a day is exercised
+	private static ExpenseColumns.Row randomRow(Random random, long id, long version) {
+		long cents = random.nextInt(10) == 0 ? -random.nextInt(10_000) : random.nextInt(1_000_000);
+		return new ExpenseColumns.Row(id, random.nextInt(DAYS), cents,
+				CATEGORIES[random.nextInt(CATEGORIES.length)], PAYMENT_METHODS[random.nextInt(PAYMENT_METHODS.length)], version);
+	}
+}
@@ -0,0 +1,155 @@
+package com.example.demo.util;
+
+import com.example.demo.model.Expense;
+import com.example.demo.model.ExportFormat;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpenseExportWriterTest {
+
+	private final ExpenseExportWriter writer = new ExpenseExportWriter(
+			new ObjectMapper().findAndRegisterModules().disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS));
+
+	@Test
+	void writesNdjsonOneObjectPerLine() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		long rows = writer.write(expenses(3), ExportFormat.NDJSON, out, e -> { });
+
+		String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+		assertEquals(3, rows);
+		assertEquals(3, lines.length);
+		for (String line : lines) {
+			assertTrue(line.startsWith("{") && line.endsWith("}"), line);
+		}
+		assertTrue(lines[0].contains("\"expenseDate\":\"2024-01-01\""));
+	}
+
+	@Test
+	void quotesCsvFieldsWithDelimiters() throws Exception {
+		Expense expense = new Expense(1L, "Coffee, large", new BigDecimal("3.50"), LocalDate.of(2024, 1, 1),
+				"Food", "said \"hi\"\non two lines", "Card", null);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		writer.write(Stream.of(expense), ExportFormat.CSV, out, e -> { });
+
+		String csv = out.toString(StandardCharsets.UTF_8);
+		assertTrue(csv.startsWith("id,item,cost,expense_date,"));
+		assertTrue(csv.contains(",\"Coffee, large\",3.50,2024-01-01,Food,\"said \"\"hi\"\"\non two lines\",Card,,"));
+	}
+
+	@Test
+	void writesRowsAsTheSourceProducesThem() throws Exception {
+		for (ExportFormat format : ExportFormat.values()) {
+			PagedSource source = new PagedSource(100_000, 500);
+			CountingOutputStream out = new CountingOutputStream(source);
+			long[] bytesAtHalf = new long[1];
+			writer.write(source.stream(), format, out, e -> {
+				// Rows are pulled as they are written: never more than one page ahead
+				assertTrue(source.pagesFetched <= e.getId() / source.pageSize + 1,
+						format + " fetched " + source.pagesFetched + " pages after " + e.getId() + " rows");
+				if (e.getId() == source.rows / 2) {
+					bytesAtHalf[0] = out.bytes;
+				}
+			});
+
+			assertEquals(source.rows / source.pageSize, source.pagesFetched);
+			// Output starts within the first few pages and keeps going out while the source is still being read
+			assertTrue(out.pagesFetchedAtFirstWrite > 0 && out.pagesFetchedAtFirstWrite <= 5,
+					format + " first wrote after " + out.pagesFetchedAtFirstWrite + " pages");
+			assertTrue(bytesAtHalf[0] > out.bytes / 4 && bytesAtHalf[0] < out.bytes,
+					format + " had written " + bytesAtHalf[0] + " of " + out.bytes + " bytes at half the rows");
+		}
+	}
+
+	// Rows fetched a page at a time on demand, like the database cursor behind an export
+	private static final class PagedSource {
+
+		private final long rows;
+		private final long pageSize;
+		private long pagesFetched;
+
+		private PagedSource(long rows, long pageSize) {
+			this.rows = rows;
+			this.pageSize = pageSize;
+		}
+
+		private Stream<Expense> stream() {
+			Iterator<Expense> iterator = new Iterator<>() {
+				private Iterator<Expense> page = Collections.emptyIterator();
+				private long next = 1;
+
+				@Override
+				public boolean hasNext() {
+					if (!page.hasNext() && next <= rows) {
+						page = expenses(next, Math.min(pageSize, rows - next + 1)).iterator();
+						next += pageSize;
+						pagesFetched++;
+					}
+					return page.hasNext();
+				}
+
+				@Override
+				public Expense next() {
+					if (!hasNext()) {
+						throw new NoSuchElementException();
+					}
+					return page.next();
+				}
+			};
+			return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false);
+		}
+	}
+
+	private static final class CountingOutputStream extends OutputStream {
+
+		private final PagedSource source;
+		private long bytes;
+		private long pagesFetchedAtFirstWrite;
+
+		private CountingOutputStream(PagedSource source) {
+			this.source = source;
+		}
+
+		@Override
+		public void write(int b) {
+			write(new byte[] {(byte) b}, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			if (bytes == 0 && len > 0) {
+				pagesFetchedAtFirstWrite = source.pagesFetched;
+			}
+			bytes += len;
+		}
+	}
+
+	private static Stream<Expense> expenses(long count) {
+		return expenses(1, count);
+	}
+
+	private static Stream<Expense> expenses(long first, long count) {
+		return LongStream.range(first, first + count).mapToObj(i -> {
+			Expense expense = new Expense(1L, "Item " + i, BigDecimal.valueOf(i, 2), LocalDate.of(2024, 1, 1),
+					"Food", "Description for row " + i, "Card", "Somewhere");
+			expense.setId(i);
+			return expense;
+		});
+	}
+}
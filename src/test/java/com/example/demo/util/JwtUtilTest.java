@@ -0,0 +1,45 @@
+package com.example.demo.util;
+
+import io.jsonwebtoken.JwtException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtUtilTest {
+
+	private static final String SECRET = "0123456789abcdef0123456789abcdef0123456789abcdef";
+
+	@Test
+	void repeatedTokenIsServedFromCache() {
+		JwtUtil jwtUtil = new JwtUtil(SECRET, 60_000, 100, new SimpleMeterRegistry());
+		String token = jwtUtil.generateToken("user@example.com", 42L);
+
+		assertEquals("user@example.com", jwtUtil.extractEmail(token));
+		assertTrue(jwtUtil.validateToken(token));
+		assertEquals(42L, jwtUtil.extractUserId(jwtUtil.parseClaims(token)));
+
+		assertEquals(1, jwtUtil.getTokenCacheStats().missCount());
+		assertEquals(2, jwtUtil.getTokenCacheStats().hitCount());
+	}
+
+	@Test
+	void tamperedTokenIsRejectedAndNotCached() {
+		JwtUtil jwtUtil = new JwtUtil(SECRET, 60_000, 100, new SimpleMeterRegistry());
+		String token = jwtUtil.generateToken("user@example.com", 42L);
+		String tampered = token.substring(0, token.length() - 2) + (token.endsWith("A") ? "BB" : "AA");
+
+		assertFalse(jwtUtil.validateToken(tampered));
+		assertThrows(JwtException.class, () -> jwtUtil.parseClaims(tampered));
+		assertEquals(0, jwtUtil.getTokenCacheSize());
+	}
+
+	@Test
+	void expiredTokenIsRejected() {
+		JwtUtil jwtUtil = new JwtUtil(SECRET, -1_000, 100, new SimpleMeterRegistry());
+		String token = jwtUtil.generateToken("user@example.com", 42L);
+
+		assertFalse(jwtUtil.validateToken(token));
+		assertEquals(0, jwtUtil.getTokenCacheSize());
+	}
+}